@@ -0,0 +1,86 @@
+package ru.accesslogparser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Синтетический набор строк лога в формате combined для бенчмарков
+ */
+final class LogCorpus {
+    private static final String[] AGENT_TEMPLATES = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.%d Safari/537.36",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.%d",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 16_%d like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Mobile/15E148",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_%d) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/16.1 Safari/605.1.15",
+            "Mozilla/5.0 (Linux; Android 10; K) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/119.0.%d Mobile Safari/537.36 OPR/79.0",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36 Edg/120.0.%d",
+            "Mozilla/5.0 (compatible; Googlebot/2.%d; +http://www.google.com/bot.html)",
+            "Mozilla/5.0 (compatible; YandexBot/3.%d; +http://yandex.com/bots)",
+    };
+    private static final String[] REFERERS = {
+            "-", "https://www.example.com/", "https://nova-news.ru/search/?rss=1&lg=1", "http://sub.domain.org/page", "https://www.google.com/"
+    };
+    private static final String[] PATHS = {
+            "/", "/index.html", "/api/v1/items?id=%d", "/static/app.js", "/images/%d.png", "/missing/%d"
+    };
+    private static final String[] METHODS = {"GET", "GET", "GET", "POST", "HEAD", "PUT"};
+    private static final int[] CODES = {200, 200, 200, 200, 301, 304, 404, 500};
+
+    private LogCorpus() {
+    }
+
+    /**
+     * Формирует строки лога
+     * @param lines - количество строк
+     * @param agents - количество различных строк UserAgent
+     * @param seed - начальное значение генератора случайных чисел
+     */
+    static String[] rows(int lines, int agents, long seed) {
+        Random random = new Random(seed);
+        String[] agentPool = userAgents(agents, random);
+        String[] rows = new String[lines];
+        long second = 0;
+
+        for (int i = 0; i < lines; i++) {
+            if (random.nextInt(4) == 0)
+                second++;
+
+            String path = String.format(PATHS[random.nextInt(PATHS.length)], random.nextInt(1000));
+            rows[i] = String.format("%d.%d.%d.%d - - [%02d/Sep/2022:%02d:%02d:%02d +0300] \"%s %s HTTP/1.1\" %d %d \"%s\" \"%s\"",
+                    10 + random.nextInt(200), random.nextInt(256), random.nextInt(256), 1 + random.nextInt(254),
+                    25 + second / 86400 % 5, second / 3600 % 24, second / 60 % 60, second % 60,
+                    METHODS[random.nextInt(METHODS.length)], path,
+                    CODES[random.nextInt(CODES.length)], random.nextInt(100_000),
+                    REFERERS[random.nextInt(REFERERS.length)], agentPool[random.nextInt(agentPool.length)]);
+        }
+        return rows;
+    }
+
+    /**
+     * Формирует набор различных строк UserAgent
+     */
+    static String[] userAgents(int agents, Random random) {
+        String[] pool = new String[agents];
+        for (int i = 0; i < agents; i++)
+            pool[i] = String.format(AGENT_TEMPLATES[i % AGENT_TEMPLATES.length], i / AGENT_TEMPLATES.length + random.nextInt(10) * 100_000);
+        return pool;
+    }
+
+    /**
+     * Записывает строки во временный файл
+     */
+    static Path write(String[] rows) throws IOException {
+        Path file = Files.createTempFile("access-log-bench", ".log");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (String row : rows) {
+                writer.write(row);
+                writer.newLine();
+            }
+        }
+        file.toFile().deleteOnExit();
+        return file;
+    }
+}
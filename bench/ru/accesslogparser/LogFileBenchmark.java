@@ -0,0 +1,43 @@
+package ru.accesslogparser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный путь от файла до статистики: {@link LogFile#read(java.util.function.Consumer)}
+ * и параллельное чтение отображённого в память файла
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogFileBenchmark {
+    @Param({"100000"})
+    private int lines;
+    @Param({"16", "1000"})
+    private int agents;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = LogCorpus.write(LogCorpus.rows(lines, agents, 42)).toFile();
+    }
+
+    @Benchmark
+    public Statistics read() throws IOException {
+        Statistics statistics = new Statistics();
+        new LogFile(file, null).read(statistics);
+        return statistics;
+    }
+
+    @Benchmark
+    public Statistics readMapped() throws IOException {
+        return new LogFile(file, null).readMapped(Runtime.getRuntime().availableProcessors(), Statistics::new, Statistics::merge);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.accesslogparser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор строки лога: {@code new LogEntry(row)}, разбор из байтов строки {@link ByteLine}
+ * и исходный разборщик на regex для сравнения. Отдельно - отчёт по трафику (время и размер ответа)
+ * при обычном и ленивом ({@link LazyLogEntry}) разборе
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"10000"})
+    private int lines;
+    @Param({"16", "1000"})
+    private int agents;
+
+    private String[] rows;
+    private byte[][] bytes;
+    private int index;
+    private final LogParser regexParser = new RegexLogParser();
+    private final CombinedLogParser parser = new CombinedLogParser();
+    private final CombinedLogParser lazyParser = new CombinedLogParser(new UserAgentCache(4096), null, true);
+    private final ByteLine line = new ByteLine(StandardCharsets.UTF_8, new ByteStringCache(1 << 16));
+
+    @Setup
+    public void setUp() {
+        rows = LogCorpus.rows(lines, agents, 42);
+        bytes = new byte[rows.length][];
+        for (int i = 0; i < rows.length; i++)
+            bytes[i] = rows[i].getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String nextRow() {
+        if (++index == rows.length)
+            index = 0;
+        return rows[index];
+    }
+
+    @Benchmark
+    public LogEntry parse() throws LogEntryCreateException {
+        return new LogEntry(nextRow());
+    }
+
+    @Benchmark
+    public LogEntry parseBytes() throws LogEntryCreateException {
+        if (++index == bytes.length)
+            index = 0;
+        return parser.parse(line.reset(bytes[index], 0, bytes[index].length));
+    }
+
+    @Benchmark
+    public long trafficEager() throws LogEntryCreateException {
+        LogEntry entry = parser.parse(nextRow());
+        return entry.getTimestamp() + entry.getResponseSize();
+    }
+
+    @Benchmark
+    public long trafficLazy() throws LogEntryCreateException {
+        LogEntry entry = lazyParser.parse(nextRow());
+        return entry.getTimestamp() + entry.getResponseSize();
+    }
+
+    @Benchmark
+    public LogEntry parseRegex() throws LogEntryCreateException {
+        return regexParser.parse(nextRow());
+    }
+}
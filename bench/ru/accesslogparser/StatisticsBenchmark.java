@@ -0,0 +1,45 @@
+package ru.accesslogparser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подсчёт статистики по заранее разобранным записям: {@link Statistics#addEntry(LogEntry)}
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsBenchmark {
+    @Param({"10000"})
+    private int lines;
+    @Param({"16", "1000"})
+    private int agents;
+
+    private LogEntry[] entries;
+    private int index;
+    private Statistics statistics;
+
+    @Setup
+    public void setUp() throws LogEntryCreateException {
+        String[] rows = LogCorpus.rows(lines, agents, 42);
+        entries = new LogEntry[rows.length];
+        for (int i = 0; i < rows.length; i++)
+            entries[i] = new LogEntry(rows[i]);
+
+        // Все ключи уже встречались: измеряется установившийся режим
+        statistics = new Statistics();
+        for (LogEntry entry : entries)
+            statistics.addEntry(entry);
+    }
+
+    @Benchmark
+    public void addEntry() {
+        if (++index == entries.length)
+            index = 0;
+        statistics.addEntry(entries[index]);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.accesslogparser;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение ОС, браузера и бота по строке UserAgent: без кэша и через {@link UserAgentCache}
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserAgentBenchmark {
+    @Param({"16", "1000"})
+    private int agents;
+
+    private String[] pool;
+    private int index;
+    private UserAgentCache cache;
+
+    @Setup
+    public void setUp() {
+        pool = LogCorpus.userAgents(agents, new Random(42));
+        cache = new UserAgentCache(4096);
+    }
+
+    private String nextAgent() {
+        if (++index == pool.length)
+            index = 0;
+        return pool[index];
+    }
+
+    @Benchmark
+    public UserAgent classify() {
+        return new UserAgent(nextAgent());
+    }
+
+    @Benchmark
+    public UserAgent classifyCached() {
+        return cache.get(nextAgent());
+    }
+}
@@ -0,0 +1,19 @@
+package ru.accesslogparser;
+
+/**
+ * Что делать со строками, которые не прошли проверку или не разобрались
+ */
+enum BadLinePolicy {
+    /**
+     * Пропускать без учёта
+     */
+    SKIP,
+    /**
+     * Считать количество по полям, в которых возникла ошибка
+     */
+    COUNT,
+    /**
+     * Считать и записывать часть строк с причиной ошибки в отдельный файл
+     */
+    SAMPLE
+}
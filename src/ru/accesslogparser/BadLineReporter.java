@@ -0,0 +1,189 @@
+package ru.accesslogparser;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учёт отклонённых строк лога согласно {@link BadLinePolicy}.
+ * Строки для файла выборки передаются в отдельный поток через ограниченную очередь и не чаще заданного
+ * количества в секунду; при переполнении очереди или превышении частоты строка только считается.
+ * Поэтому повреждённый лог не замедляет разбор правильных строк. Может использоваться из нескольких потоков
+ */
+class BadLineReporter implements Closeable {
+    /**
+     * Признак окончания записи для потока записи (сравнивается по ссылке)
+     */
+    private static final String STOP = new String("STOP");
+
+    private final BadLinePolicy policy;
+    /**
+     * Количество строк по полям, индекс - {@link LogField#ordinal()}, последний элемент - поле неизвестно
+     */
+    private final LongAdder[] counts = new LongAdder[LogField.values().length + 1];
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private final int maxPerSecond;
+    private final AtomicLong currentSecond = new AtomicLong();
+    private final AtomicInteger currentSecondCount = new AtomicInteger();
+    private final BlockingQueue<String> queue;
+    private final Thread writer;
+    private IOException writeError;
+
+    /**
+     * Создаёт учёт без записи строк в файл
+     * @param policy - {@link BadLinePolicy#SKIP} или {@link BadLinePolicy#COUNT}
+     */
+    BadLineReporter(BadLinePolicy policy) {
+        if (policy == BadLinePolicy.SAMPLE)
+            throw new IllegalArgumentException("Для выборки строк нужен файл");
+
+        this.policy = policy;
+        this.maxPerSecond = 0;
+        this.queue = null;
+        this.writer = null;
+        initCounts();
+    }
+
+    /**
+     * Создаёт учёт с записью выборки строк в файл
+     * @param sampleFile - файл выборки, перезаписывается
+     * @param maxPerSecond - наибольшее количество строк, записываемых в секунду
+     */
+    BadLineReporter(Path sampleFile, int maxPerSecond) throws IOException {
+        if (maxPerSecond <= 0)
+            throw new IllegalArgumentException("Количество строк в секунду должно быть больше нуля: " + maxPerSecond);
+
+        this.policy = BadLinePolicy.SAMPLE;
+        this.maxPerSecond = maxPerSecond;
+        this.queue = new ArrayBlockingQueue<>(Math.max(maxPerSecond, 64));
+        initCounts();
+
+        BufferedWriter out = Files.newBufferedWriter(sampleFile);
+        writer = new Thread(() -> write(out), "bad-line-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void initCounts() {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = new LongAdder();
+    }
+
+    /**
+     * Учитывает отклонённую строку. Строка декодируется (например, {@link ByteLine}) и объединяется с причиной,
+     * только если она действительно передаётся в файл выборки
+     * @param line - исходная строка
+     * @param field - поле, в котором возникла ошибка, или null
+     * @param reason - причина
+     */
+    void reject(CharSequence line, LogField field, String reason) {
+        if (policy == BadLinePolicy.SKIP)
+            return;
+
+        counts[field == null ? counts.length - 1 : field.ordinal()].increment();
+        if (policy != BadLinePolicy.SAMPLE)
+            return;
+
+        long second = System.currentTimeMillis() / 1000;
+        long current = currentSecond.get();
+        if (second != current && currentSecond.compareAndSet(current, second))
+            currentSecondCount.set(0);
+
+        if (currentSecondCount.incrementAndGet() <= maxPerSecond && queue.offer(reason + '\t' + line))
+            sampled.increment();
+        else
+            dropped.increment();
+    }
+
+    private void write(BufferedWriter out) {
+        try (out) {
+            while (true) {
+                String record = queue.take();
+                if (record == STOP)
+                    break;
+                out.write(record);
+                out.newLine();
+                if (queue.isEmpty())
+                    out.flush();
+            }
+        } catch (IOException ex) {
+            writeError = ex;
+            queue.clear();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getCount() {
+        long total = 0;
+        for (LongAdder count : counts)
+            total += count.sum();
+        return total;
+    }
+
+    /**
+     * Количество строк по имени поля {@link LogField} (UNKNOWN - поле не определено, например, строка слишком длинная)
+     */
+    Map<String, Long> getCountsByField() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        LogField[] fields = LogField.values();
+        for (int i = 0; i < counts.length; i++) {
+            long count = counts[i].sum();
+            if (count > 0)
+                result.put(i < fields.length ? fields[i].name() : "UNKNOWN", count);
+        }
+        return result;
+    }
+
+    /**
+     * Количество строк, переданных в файл выборки
+     */
+    long getSampled() {
+        return sampled.sum();
+    }
+
+    /**
+     * Количество строк, не попавших в файл выборки из-за ограничения частоты или переполнения очереди
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Дописывает оставшиеся в очереди строки и закрывает файл выборки
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null && writer.isAlive()) {
+            try {
+                queue.put(STOP);
+                writer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (writeError != null)
+            throw writeError;
+    }
+
+    @Override
+    public String toString() {
+        return "BadLines {" +
+                "policy=" + policy +
+                ", count=" + getCount() +
+                ", byField=" + getCountsByField() +
+                (policy == BadLinePolicy.SAMPLE ? ", sampled=" + getSampled() + ", dropped=" + getDropped() : "") +
+                '}';
+    }
+}
@@ -0,0 +1,106 @@
+package ru.accesslogparser;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Строка лога как байты без декодирования. Каждый байт представляется символом от 0 до 255,
+ * поэтому ASCII символы (разделители, цифры, время, метод) читаются прямо из байтов.
+ * Фрагменты строки ({@link #subSequence}) декодируются в кодировке файла через кэш строк,
+ * повторяющиеся значения (ip, пути, referer, UserAgent) возвращаются без декодирования и выделения памяти.
+ * Объект переиспользуется для всех строк части файла и указывает на фрагмент общего массива байтов,
+ * в который часть файла копируется блоками. Не может использоваться из нескольких потоков
+ */
+final class ByteLine implements CharSequence {
+    private final Charset charset;
+    private final ByteStringCache strings;
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    /**
+     * @param charset - кодировка файла, должна быть совместима с ASCII ({@link #isAsciiCompatible})
+     * @param strings - кэш декодированных фрагментов
+     */
+    ByteLine(Charset charset, ByteStringCache strings) {
+        this.charset = charset;
+        this.strings = strings;
+    }
+
+    /**
+     * Кодировки, в которых байт ASCII всегда означает символ ASCII и не встречается внутри
+     * многобайтовых последовательностей. Только для них разбор по байтам совпадает с разбором строки
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Переключается на новую строку [offset, offset + length) массива, массив не копируется
+     */
+    ByteLine reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * Массив, в котором лежит строка; действителен только до следующего {@link #reset}
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * Начало строки в массиве {@link #bytes()}
+     */
+    int offset() {
+        return offset;
+    }
+
+    /**
+     * Признак строки из одних ASCII байтов: символы такой строки совпадают с декодированными
+     */
+    boolean isAscii() {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (bytes[i] < 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes[offset + index] & 0xFF);
+    }
+
+    /**
+     * Декодированный фрагмент [start, end); одинаковые фрагменты возвращаются одним экземпляром строки из кэша
+     */
+    @Override
+    public String subSequence(int start, int end) {
+        return strings.get(this, start, end);
+    }
+
+    /**
+     * Декодирует фрагмент [start, end) без кэша
+     */
+    String decode(int start, int end) {
+        return new String(bytes, offset + start, end - start, charset);
+    }
+
+    /**
+     * Декодированная строка целиком (для сообщений об ошибках и проверок, которым нужен String)
+     */
+    @Override
+    public String toString() {
+        return decode(0, length);
+    }
+}
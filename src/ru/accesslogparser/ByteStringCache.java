@@ -0,0 +1,73 @@
+package ru.accesslogparser;
+
+import java.util.Arrays;
+
+/**
+ * Кэш декодированных фрагментов строк лога по их байтам. Фрагмент может находиться в одной из двух
+ * соседних ячеек: новый фрагмент занимает первую, а её прежнее значение переходит во вторую,
+ * вытесняя то, что там было.
+ * Попадание не выделяет память, промах декодирует фрагмент и запоминает копию его байтов.
+ * Не потокобезопасен, у каждого потока разбора свой кэш
+ */
+final class ByteStringCache {
+    /**
+     * Фрагменты длиннее не кэшируются: они редко повторяются, а сравнение дорогое
+     */
+    private static final int MAX_LENGTH = 512;
+
+    private final byte[][] keys;
+    private final String[] values;
+    private final int mask;
+
+    /**
+     * @param capacity - количество ячеек, округляется вверх до степени двойки (не меньше двух)
+     */
+    ByteStringCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.keys = new byte[size][];
+        this.values = new String[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Возвращает декодированный фрагмент [start, end) строки
+     */
+    String get(ByteLine line, int start, int end) {
+        int length = end - start;
+        if (length > MAX_LENGTH)
+            return line.decode(start, end);
+
+        byte[] bytes = line.bytes();
+        start += line.offset();
+        end += line.offset();
+        // В hash входят не больше 32 байтов, равномерно взятых из фрагмента: длинные UserAgent и referer
+        // не хэшируются целиком, а совпадение всё равно проверяется по всем байтам
+        int hash = length;
+        int step = 1 + (length >>> 5);
+        for (int i = start; i < end; i += step)
+            hash = 31 * hash + bytes[i];
+        hash = 31 * hash + bytes[end - 1];
+        // Перемешивание битов как в MurmurHash3: у коротких похожих строк (ip адресов) младшие биты hash почти одинаковы
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        int index = hash & mask;
+
+        byte[] key = keys[index];
+        if (key != null && Arrays.equals(key, 0, key.length, bytes, start, end))
+            return values[index];
+        int pair = index ^ 1;
+        key = keys[pair];
+        if (key != null && Arrays.equals(key, 0, key.length, bytes, start, end))
+            return values[pair];
+
+        keys[pair] = keys[index];
+        values[pair] = values[index];
+        String value = line.decode(start - line.offset(), end - line.offset());
+        keys[index] = Arrays.copyOfRange(bytes, start, end);
+        values[index] = value;
+        return value;
+    }
+}
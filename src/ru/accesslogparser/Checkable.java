@@ -2,4 +2,12 @@ package ru.accesslogparser;
 
 public interface Checkable {
     boolean checkString(String str);
-}
\ No newline at end of file
+
+    /**
+     * Проверка строки, которая может быть не декодирована (например, {@link ByteLine}).
+     * По умолчанию строка декодируется и проверяется {@link #checkString(String)}
+     */
+    default boolean checkLine(CharSequence line) {
+        return checkString(line.toString());
+    }
+}
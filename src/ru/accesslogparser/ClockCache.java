@@ -0,0 +1,96 @@
+package ru.accesslogparser;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш ограниченного размера с вытеснением по алгоритму "часы" (второй шанс), приближающему LRU.
+ * Ключи лежат в кольце, по которому идёт стрелка: запись, к которой обращались после прошлого прохода стрелки,
+ * получает второй шанс, а первая запись без обращений вытесняется. Поэтому часто используемые записи остаются
+ * в кэше, а редкие вытесняются по очереди, независимо от того, в какие корзины хеш-таблицы они попали.
+ * Чтение из нескольких потоков идёт без блокировок, добавление синхронизировано
+ * @param <K> - тип ключа
+ * @param <V> - тип значения
+ */
+final class ClockCache<K, V> {
+    private final int capacity;
+    private final ConcurrentHashMap<K, Entry<V>> map;
+    /**
+     * Ключи в порядке занятия ячеек кольца
+     */
+    private final Object[] ring;
+    private int size;
+    private int hand;
+
+    /**
+     * @param capacity - максимальное количество записей
+     */
+    ClockCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Размер кэша должен быть больше нуля: " + capacity);
+
+        this.capacity = capacity;
+        this.map = new ConcurrentHashMap<>(Math.min(capacity, 1024));
+        this.ring = new Object[capacity];
+    }
+
+    /**
+     * @return - значение или null, если ключа нет в кэше
+     */
+    V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null)
+            return null;
+        // Запись только при изменении, чтобы частые чтения из разных потоков не делили строку кэша процессора
+        if (!entry.referenced)
+            entry.referenced = true;
+        return entry.value;
+    }
+
+    /**
+     * Добавляет значение, вытесняя запись при переполнении
+     * @return - значение, уже сохранённое под этим ключом другим потоком, или переданное значение
+     */
+    synchronized V put(K key, V value) {
+        Entry<V> existing = map.get(key);
+        if (existing != null)
+            return existing.value;
+
+        if (size < capacity) {
+            ring[size++] = key;
+        } else {
+            while (true) {
+                Entry<V> candidate = map.get(key(hand));
+                if (!candidate.referenced)
+                    break;
+                candidate.referenced = false;
+                hand = (hand + 1) % capacity;
+            }
+            map.remove(key(hand));
+            ring[hand] = key;
+            hand = (hand + 1) % capacity;
+        }
+        map.put(key, new Entry<>(value));
+        return value;
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(int index) {
+        return (K) ring[index];
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        /**
+         * Признак обращения после прошлого прохода стрелки
+         */
+        private volatile boolean referenced;
+
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package ru.accesslogparser;
+
+/**
+ * Однопроходный разборщик строки лога в формате combined.
+ * Идёт по строке один раз без regex, границы токенов определяет {@link LineTokenizer}
+ */
+public class CombinedLogParser implements LogParser {
+    private static final LogField[] FIELDS = LogField.values();
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+
+    /**
+     * Кэш разобранных UserAgent, общий для всех потоков, использующих разборщик
+     */
+    private final UserAgentCache userAgents;
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+    /**
+     * Словарь для ip адресов, путей и referer (null - строки не объединяются)
+     */
+    private final FieldDictionary dictionary;
+    /**
+     * Создавать {@link LazyLogEntry}: строковые поля и UserAgent разбираются при первом обращении
+     */
+    private final boolean lazy;
+
+    public CombinedLogParser() {
+        this(new UserAgentCache(4096));
+    }
+
+    public CombinedLogParser(UserAgentCache userAgents) {
+        this(userAgents, null);
+    }
+
+    /**
+     * @param userAgents - кэш разобранных UserAgent
+     * @param dictionary - словарь, через который пропускаются ip адреса, пути и referer,
+     *                   чтобы одинаковые значения в записях ссылались на один экземпляр строки
+     */
+    public CombinedLogParser(UserAgentCache userAgents, FieldDictionary dictionary) {
+        this(userAgents, dictionary, false);
+    }
+
+    /**
+     * @param userAgents - кэш разобранных UserAgent
+     * @param dictionary - словарь для ip адресов, путей и referer (null - строки не объединяются).
+     *                   В ленивом режиме - только {@link ConcurrentFieldDictionary}: записи обращаются к словарю
+     *                   при чтении полей, возможно из других потоков
+     * @param lazy - создавать записи, которые запоминают границы ip адреса, запроса, referer и UserAgent
+     *             в строке и разбирают их только при первом обращении. Время, код ответа и размер
+     *             разбираются сразу, поэтому ошибки в строке обнаруживаются так же, как при обычном разборе
+     */
+    public CombinedLogParser(UserAgentCache userAgents, FieldDictionary dictionary, boolean lazy) {
+        if (lazy && dictionary != null && !(dictionary instanceof ConcurrentFieldDictionary))
+            throw new IllegalArgumentException("Ленивому разбору нужен потокобезопасный словарь: " + dictionary.getClass().getSimpleName());
+
+        this.userAgents = userAgents;
+        this.dictionary = dictionary;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Признак разбора в {@link LazyLogEntry}
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    @Override
+    public LogEntry parse(String row) throws LogEntryCreateException {
+        return parse((CharSequence) row);
+    }
+
+    /**
+     * Разбирает строку, заданную строкой или байтами {@link ByteLine}. Числа, время и метод читаются
+     * прямо из символов, а ip, путь, referer и UserAgent получаются через {@link CharSequence#subSequence},
+     * который для {@link ByteLine} возвращает строку из кэша без декодирования
+     */
+    LogEntry parse(CharSequence row) throws LogEntryCreateException {
+        // Границы полей, разбор которых откладывается в ленивом режиме
+        int ipStart = 0, ipEnd = 0, requestStart = 0, requestEnd = 0, refererStart = 0, refererEnd = 0, agentStart = 0, agentEnd = 0;
+        String ipAddr = null;
+        LogTime time = null;
+        HttpMethod method = null;
+        String path = null;
+        int responseCode = 0;
+        int responseSize = 0;
+        String referer = null;
+        UserAgent userAgent = null;
+
+        LineTokenizer tokens = new LineTokenizer(row);
+
+        while (tokens.next()) {
+            LogField field = tokens.field();
+            int pos = tokens.tokenStart();
+            int next = tokens.tokenEnd();
+            int start = tokens.start();
+            int end = tokens.end();
+            char kind = tokens.kind();
+
+            try {
+                switch (field) {
+                    case IP_ADDR -> {
+                        if (lazy) {
+                            ipStart = pos;
+                            ipEnd = next;
+                        } else {
+                            ipAddr = intern(text(row, pos, next));
+                        }
+                    }
+                    case TIME -> {
+                        checkKind(field, kind, '[');
+                        time = timestamps.decode(row, start, end);
+                        if (time == null)
+                            throw new LogEntryCreateException(field, "Неверное время: " + text(row, start, end), null);
+                    }
+                    case REQUEST -> {
+                        checkKind(field, kind, '"');
+                        if (lazy) {
+                            requestStart = start;
+                            requestEnd = end;
+                        } else {
+                            method = parseMethod(row, start, end);
+                            path = parsePath(row, start, end, method);
+                        }
+                    }
+                    case RESPONSE_CODE -> responseCode = parseInt(field, row, pos, next);
+                    case RESPONSE_SIZE -> responseSize = parseInt(field, row, pos, next);
+                    case REFERER -> {
+                        checkKind(field, kind, '"');
+                        if (lazy) {
+                            refererStart = start;
+                            refererEnd = end;
+                        } else {
+                            referer = intern(text(row, start, end));
+                        }
+                    }
+                    case USER_AGENT -> {
+                        checkKind(field, kind, '"');
+                        if (lazy) {
+                            agentStart = start;
+                            agentEnd = end;
+                        } else {
+                            userAgent = userAgents.get(text(row, start, end));
+                        }
+                    }
+                }
+            } catch (LogEntryCreateException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new LogEntryCreateException(field, "Ошибка при разборе поля " + field + ": " + ex, ex);
+            }
+        }
+
+        if (tokens.count() < FIELDS.length)
+            throw new LogEntryCreateException(FIELDS[tokens.count()], "В строке отсутствует поле " + FIELDS[tokens.count()], null);
+
+        if (lazy)
+            return new LazyLogEntry(this, row.toString(), time, responseCode, responseSize,
+                    ipStart, ipEnd, requestStart, requestEnd, refererStart, refererEnd, agentStart, agentEnd);
+        return new LogEntry(ipAddr, time, method, path, responseCode, responseSize, referer, userAgent);
+    }
+
+    /**
+     * Метод запроса из начала текста запроса [start, end) или null, если метод не указан или неизвестен
+     */
+    static HttpMethod parseMethod(CharSequence row, int start, int end) {
+        int space = start;
+        while (space < end && row.charAt(space) != ' ')
+            space++;
+        if (space > start && space < end) {
+            for (HttpMethod method : METHODS) {
+                if (method.name().length() == space - start && LineTokenizer.regionMatches(row, start, method.name(), 0, space - start))
+                    return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Путь из текста запроса [start, end): всё, что следует за методом, или весь текст, если метода нет
+     */
+    String parsePath(CharSequence row, int start, int end, HttpMethod method) {
+        int pathStart = (method == null) ? start : start + method.name().length() + 1;
+        return intern(text(row, pathStart, end));
+    }
+
+    /**
+     * Разбирает ip адрес или referer ленивой записи
+     */
+    String parseText(CharSequence row, int start, int end) {
+        return intern(text(row, start, end));
+    }
+
+    UserAgent parseUserAgent(CharSequence row, int start, int end) {
+        return userAgents.get(text(row, start, end));
+    }
+
+    /**
+     * Разбирает целое число так же, как {@link Integer#parseInt(CharSequence, int, int, int)},
+     * но сообщает об ошибке исключением без стека вызовов
+     */
+    static int parseInt(LogField field, CharSequence row, int start, int end) throws LogEntryCreateException {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (row.charAt(i) == '-' || row.charAt(i) == '+'))
+            negative = row.charAt(i++) == '-';
+        if (i == end)
+            throw new LogEntryCreateException(field, "Поле " + field + " не является числом: " + text(row, start, end), null);
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = Character.digit(row.charAt(i), 10);
+            if (digit < 0)
+                throw new LogEntryCreateException(field, "Поле " + field + " не является числом: " + text(row, start, end), null);
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1)
+                throw new LogEntryCreateException(field, "Поле " + field + " вне диапазона int: " + text(row, start, end), null);
+        }
+
+        if (negative)
+            value = -value;
+        if (value > Integer.MAX_VALUE)
+            throw new LogEntryCreateException(field, "Поле " + field + " вне диапазона int: " + text(row, start, end), null);
+        return (int) value;
+    }
+
+    private static String text(CharSequence row, int start, int end) {
+        return row.subSequence(start, end).toString();
+    }
+
+    private String intern(String value) {
+        return (dictionary == null) ? value : dictionary.intern(value);
+    }
+
+    /**
+     * Проверяет, что поле записано в ожидаемых ограничителях
+     */
+    private static void checkKind(LogField field, char kind, char expected) throws LogEntryCreateException {
+        if (kind != expected)
+            throw new LogEntryCreateException(field, "Поле " + field + " должно начинаться с символа " + expected, null);
+    }
+}
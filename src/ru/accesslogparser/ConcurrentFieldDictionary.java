@@ -0,0 +1,65 @@
+package ru.accesslogparser;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Потокобезопасный словарь значений полей. Размер не ограничен,
+ * поэтому словарь стоит использовать для полей с небольшим числом различных значений
+ */
+public class ConcurrentFieldDictionary implements FieldDictionary {
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Значения по идентификаторам. Дописывается под блокировкой, читается без неё
+     */
+    private volatile String[] values = new String[1024];
+    private int size;
+
+    @Override
+    public String intern(String value) {
+        return entry(value).value;
+    }
+
+    @Override
+    public int idOf(String value) {
+        return entry(value).id;
+    }
+
+    @Override
+    public String valueOf(int id) {
+        String[] current = values;
+        if (id < 0 || id >= current.length || current[id] == null)
+            throw new IndexOutOfBoundsException("Идентификатор " + id + " отсутствует в словаре");
+        return current[id];
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    private Entry entry(String value) {
+        Entry entry = entries.get(value);
+        return (entry != null) ? entry : entries.computeIfAbsent(value, this::register);
+    }
+
+    private synchronized Entry register(String value) {
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;
+        return new Entry(value, size++);
+    }
+
+    private static class Entry {
+        private final String value;
+        private final int id;
+
+        private Entry(String value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+}
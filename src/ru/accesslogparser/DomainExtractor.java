@@ -0,0 +1,76 @@
+package ru.accesslogparser;
+
+/**
+ * Выделяет доменное имя из referer без regex и запоминает результат в ограниченном кэше.
+ * Правила совпадают с прежним выражением {@code ^(http(s)?://|)(www\.|)(?<domain>([^/]+)(?<!www)\.[^/.&]+)($|/.*)}:
+ * после необязательных схемы и "www." берётся хост до первого '/', в нём должна быть точка,
+ * часть перед последней точкой не пустая и не оканчивается на "www", часть после - не пустая и без '&'.
+ * Может использоваться из нескольких потоков
+ */
+class DomainExtractor {
+    private static final String[] SCHEMES = {"https://", "http://", ""};
+    private static final String WWW = "www.";
+    /**
+     * Значение в кэше для referer без доменного имени
+     */
+    private static final String NO_DOMAIN = "";
+
+    private final ClockCache<String, String> cache;
+
+    /**
+     * @param capacity - максимальное количество запоминаемых referer
+     */
+    DomainExtractor(int capacity) {
+        this.cache = new ClockCache<>(capacity);
+    }
+
+    /**
+     * Возвращает доменное имя из referer
+     * @param referer - адрес страницы
+     * @return - доменное имя или null, если его нет
+     */
+    String extract(String referer) {
+        String domain = cache.get(referer);
+        if (domain == null) {
+            domain = parse(referer);
+            domain = cache.put(referer, (domain == null) ? NO_DOMAIN : domain);
+        }
+
+        return domain.isEmpty() ? null : domain;
+    }
+
+    /**
+     * Разбирает referer без использования кэша
+     * @return - доменное имя или null, если его нет
+     */
+    static String parse(String referer) {
+        for (String scheme : SCHEMES) {
+            if (!referer.startsWith(scheme))
+                continue;
+
+            int hostStart = scheme.length();
+            // Сначала с "www.", затем без него, как при переборе вариантов в regex
+            for (int www = 1; www >= 0; www--) {
+                if (www == 1 && !referer.startsWith(WWW, hostStart))
+                    continue;
+
+                int domainStart = hostStart + www * WWW.length();
+                int domainEnd = referer.indexOf('/', domainStart);
+                if (domainEnd < 0)
+                    domainEnd = referer.length();
+
+                int dot = referer.lastIndexOf('.', domainEnd - 1);
+                if (dot <= domainStart || dot == domainEnd - 1)
+                    continue;
+                if (dot >= 3 && referer.startsWith("www", dot - 3))
+                    continue;
+                int ampersand = referer.indexOf('&', dot);
+                if (ampersand >= 0 && ampersand < domainEnd)
+                    continue;
+
+                return referer.substring(domainStart, domainEnd);
+            }
+        }
+        return null;
+    }
+}
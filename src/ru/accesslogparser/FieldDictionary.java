@@ -0,0 +1,28 @@
+package ru.accesslogparser;
+
+/**
+ * Словарь повторяющихся значений полей лога (ip адреса, пути, referer).
+ * Сопоставляет каждому значению единственный общий экземпляр строки и целочисленный идентификатор
+ */
+public interface FieldDictionary {
+    /**
+     * Возвращает общий экземпляр строки, равной value, добавляя её в словарь при отсутствии
+     */
+    String intern(String value);
+
+    /**
+     * Возвращает идентификатор значения, добавляя его в словарь при отсутствии.
+     * Идентификаторы выдаются подряд, начиная с 0
+     */
+    int idOf(String value);
+
+    /**
+     * Возвращает значение по идентификатору, выданному {@link #idOf(String)}
+     */
+    String valueOf(int id);
+
+    /**
+     * Количество значений в словаре
+     */
+    int size();
+}
@@ -0,0 +1,170 @@
+package ru.accesslogparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Часть файла [start, end), выровненная по границам строк
+ */
+class FileChunk {
+    /**
+     * Максимальный размер одной части, отображаемой в память
+     */
+    private static final long MAX_CHUNK_SIZE = 1L << 28;
+    /**
+     * Размер окна, в которое копируются байты при разборе строк по байтам
+     */
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private final long start;
+    private final long end;
+
+    private FileChunk(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Делит файл на части так, чтобы каждая начиналась с начала строки
+     * @param channel - канал открытого файла
+     * @param count - желаемое количество частей
+     * @return - список непустых частей в порядке следования в файле
+     */
+    static List<FileChunk> split(FileChannel channel, int count) throws IOException {
+        long size = channel.size();
+        count = (int) Math.max(count, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+
+        List<FileChunk> chunks = new ArrayList<>(count);
+        long chunkStart = 0;
+        for (int i = 1; i <= count && chunkStart < size; i++) {
+            long chunkEnd = (i == count) ? size : nextLineStart(channel, Math.max(chunkStart, size * i / count), size);
+            if (chunkEnd > chunkStart)
+                chunks.add(new FileChunk(chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+        }
+        return chunks;
+    }
+
+    /**
+     * Ищет начало строки, следующей за позицией pos
+     */
+    private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return pos + i + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    /**
+     * Отображает часть файла в память и передаёт каждую строку обработчику.
+     * Концом строки считается '\n', '\r' или "\r\n", как в {@link java.io.BufferedReader#readLine()}
+     * @param channel - канал открытого файла
+     * @param charset - кодировка файла
+     * @param action - обработчик строки
+     */
+    void forEachLine(FileChannel channel, Charset charset, Consumer<String> action) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = buffer.limit();
+        byte[] line = new byte[1024];
+        int lineStart = 0;
+
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b != '\n' && b != '\r')
+                continue;
+
+            int length = i - lineStart;
+            if (length > line.length)
+                line = new byte[Math.max(length, line.length * 2)];
+            buffer.get(lineStart, line, 0, length);
+            action.accept(new String(line, 0, length, charset));
+
+            if (b == '\r' && i + 1 < limit && buffer.get(i + 1) == '\n')
+                i++;
+            lineStart = i + 1;
+        }
+
+        // Последняя строка без перевода строки в конце файла
+        if (lineStart < limit) {
+            int length = limit - lineStart;
+            if (length > line.length)
+                line = new byte[length];
+            buffer.get(lineStart, line, 0, length);
+            action.accept(new String(line, 0, length, charset));
+        }
+    }
+
+    /**
+     * Отображает часть файла в память и передаёт обработчику каждую строку как байты, без декодирования.
+     * Байты копируются из отображённого буфера блоками в окно-массив, строки передаются как фрагменты окна:
+     * поштучное чтение байтов из отображённого буфера заметно медленнее чтения из массива.
+     * Концы строк определяются так же, как в {@link #forEachLine(FileChannel, Charset, Consumer)}
+     * @param channel - канал открытого файла
+     * @param line - переиспользуемое представление строки, указывает на очередную строку только во время вызова обработчика
+     * @param action - обработчик строки
+     */
+    void forEachLine(FileChannel channel, ByteLine line, Consumer<ByteLine> action) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = buffer.limit();
+        byte[] window = new byte[WINDOW_SIZE];
+        int filled = 0;
+        int lineStart = 0;
+        int position = 0;
+        // Предыдущая строка закончилась на '\r': следующий '\n' относится к тому же концу строки
+        boolean afterCr = false;
+
+        while (position < limit) {
+            // Незаконченная строка переносится в начало окна, а если она занимает всё окно - окно увеличивается
+            if (lineStart > 0) {
+                System.arraycopy(window, lineStart, window, 0, filled - lineStart);
+                filled -= lineStart;
+                lineStart = 0;
+            } else if (filled == window.length) {
+                window = Arrays.copyOf(window, window.length * 2);
+            }
+
+            int scan = filled;
+            int count = Math.min(window.length - filled, limit - position);
+            buffer.get(position, window, filled, count);
+            position += count;
+            filled += count;
+
+            for (int i = scan; i < filled; i++) {
+                byte b = window[i];
+                if (afterCr) {
+                    afterCr = false;
+                    if (b == '\n') {
+                        lineStart = i + 1;
+                        continue;
+                    }
+                }
+                if (b != '\n' && b != '\r')
+                    continue;
+
+                action.accept(line.reset(window, lineStart, i - lineStart));
+                afterCr = (b == '\r');
+                lineStart = i + 1;
+            }
+        }
+
+        // Последняя строка без перевода строки в конце файла
+        if (lineStart < filled)
+            action.accept(line.reset(window, lineStart, filled - lineStart));
+    }
+}
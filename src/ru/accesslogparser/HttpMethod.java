@@ -0,0 +1,6 @@
+package ru.accesslogparser;
+
+/**
+ Используемые в рамках задачи методы
+ */
+enum HttpMethod {POST, GET, PUT, HEAD}
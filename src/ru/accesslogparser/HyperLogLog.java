@@ -0,0 +1,132 @@
+package ru.accesslogparser;
+
+import java.util.Arrays;
+
+/**
+ * Приближённый подсчёт количества различных значений (HyperLogLog).
+ * Занимает 2^precision байт независимо от числа значений, стандартная относительная ошибка - 1.04 / sqrt(2^precision).
+ * Два счётчика с одинаковой точностью объединяются без потери точности. Не потокобезопасен
+ */
+class HyperLogLog {
+    static final int MIN_PRECISION = 4;
+    static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision - количество бит хеша, выбирающих регистр (от 4 до 18)
+     */
+    HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("Точность должна быть от " + MIN_PRECISION + " до " + MAX_PRECISION + ": " + precision);
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Создаёт счётчик с наименьшим размером, стандартная ошибка которого не превышает заданную
+     * @param relativeError - допустимая относительная ошибка, например 0.01
+     */
+    static HyperLogLog withError(double relativeError) {
+        if (!(relativeError > 0 && relativeError < 1))
+            throw new IllegalArgumentException("Ошибка должна быть от 0 до 1: " + relativeError);
+
+        double registersNeeded = Math.pow(1.04 / relativeError, 2);
+        int precision = (int) Math.ceil(Math.log(registersNeeded) / Math.log(2));
+        return new HyperLogLog(Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision)));
+    }
+
+    void add(String value) {
+        addHash(hash(value));
+    }
+
+    void add(long value) {
+        addHash(mix(value));
+    }
+
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // Номер первой единицы в оставшихся битах; ограничитель не даёт выйти за их пределы
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (registers[index] < rank)
+            registers[index] = (byte) rank;
+    }
+
+    /**
+     * Оценка количества различных значений
+     */
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0)
+                zeros++;
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+        // На малых количествах точнее линейный подсчёт по пустым регистрам
+        if (estimate <= 2.5 * m && zeros > 0)
+            estimate = m * Math.log((double) m / zeros);
+        return Math.round(estimate);
+    }
+
+    /**
+     * Объединяет с другим счётчиком той же точности: результат соответствует объединению множеств значений
+     * @return - текущий счётчик
+     */
+    HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision)
+            throw new IllegalArgumentException("Нельзя объединить счётчики с точностью " + precision + " и " + other.precision);
+
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < other.registers[i])
+                registers[i] = other.registers[i];
+        }
+        return this;
+    }
+
+    void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    int getPrecision() {
+        return precision;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+
+    /**
+     * 64-битный хеш строки: FNV-1a по символам с последующим перемешиванием битов
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Финальное перемешивание MurmurHash3: каждый бит входа влияет на все биты результата
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
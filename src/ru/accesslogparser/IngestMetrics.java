@@ -0,0 +1,225 @@
+package ru.accesslogparser;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Счётчики разбора лога: прочитанные и отклонённые строки, ошибки разбора по полям, объём данных
+ * и время разбора, определения UserAgent и подсчёта статистики.
+ * Счётчики - {@link LongAdder}, поэтому обновление из многих потоков почти не мешает разбору.
+ * Время разбора и подсчёта измеряется только у случайной выборки строк (в среднем одна из {@link #SAMPLE_RATE})
+ * и пересчитывается на все строки. Время определения UserAgent измеряется при каждом промахе кэша.
+ * Доступны через JMX ({@link #registerMBean()}) и текстом ({@link #toString()})
+ */
+public class IngestMetrics implements IngestMetricsMXBean {
+    /**
+     * Время измеряется в среднем у одной строки из SAMPLE_RATE
+     */
+    static final int SAMPLE_RATE = 64;
+    private static final IngestMetrics DEFAULT = new IngestMetrics();
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder linesRejected = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    /**
+     * Ошибки разбора по полям, индекс - {@link LogField#ordinal()}, последний элемент - поле неизвестно
+     */
+    private final LongAdder[] parseFailures = new LongAdder[LogField.values().length + 1];
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder sampledParseNanos = new LongAdder();
+    private final LongAdder sampledAggregateNanos = new LongAdder();
+    private final LongAdder classifications = new LongAdder();
+    private final LongAdder classifyNanos = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+
+    public IngestMetrics() {
+        for (int i = 0; i < parseFailures.length; i++)
+            parseFailures[i] = new LongAdder();
+    }
+
+    /**
+     * Общий экземпляр, в который пишут {@link LogFile} и {@link UserAgentCache} по умолчанию
+     */
+    public static IngestMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Учитывает прочитанную строку
+     * @param bytes - размер строки в байтах файла без перевода строки
+     */
+    void lineRead(long bytes) {
+        linesRead.increment();
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Учитывает строку, отброшенную фильтром {@link LogFilter}
+     */
+    void lineRejected() {
+        linesRejected.increment();
+    }
+
+    /**
+     * Учитывает ошибку разбора или строку, не прошедшую проверку допустимости {@link Checkable}
+     * @param field - поле, в котором возникла ошибка, или null
+     */
+    void parseFailed(LogField field) {
+        parseFailures[field == null ? parseFailures.length - 1 : field.ordinal()].increment();
+    }
+
+    /**
+     * Решает, измерять ли время обработки текущей строки
+     */
+    boolean sample() {
+        return ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+    }
+
+    /**
+     * Учитывает измеренное время обработки строки из выборки
+     * @param parseNanos - время разбора строки
+     * @param aggregateNanos - время передачи записи обработчику (подсчёта статистики)
+     */
+    void recordSample(long parseNanos, long aggregateNanos) {
+        samples.increment();
+        sampledParseNanos.add(parseNanos);
+        sampledAggregateNanos.add(aggregateNanos);
+    }
+
+    /**
+     * Учитывает определение типа UserAgent по строке (промах кэша)
+     */
+    void recordClassify(long nanos) {
+        classifications.increment();
+        classifyNanos.add(nanos);
+    }
+
+    /**
+     * Обнуляет счётчики и начинает отсчёт времени заново
+     */
+    @Override
+    public void reset() {
+        linesRead.reset();
+        linesRejected.reset();
+        bytesRead.reset();
+        for (LongAdder failures : parseFailures)
+            failures.reset();
+        samples.reset();
+        sampledParseNanos.reset();
+        sampledAggregateNanos.reset();
+        classifications.reset();
+        classifyNanos.reset();
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getLinesRejected() {
+        return linesRejected.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getParseFailures() {
+        long total = 0;
+        for (LongAdder failures : parseFailures)
+            total += failures.sum();
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getParseFailuresByField() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        LogField[] fields = LogField.values();
+        for (int i = 0; i < parseFailures.length; i++) {
+            long count = parseFailures[i].sum();
+            if (count > 0)
+                result.put(i < fields.length ? fields[i].name() : "UNKNOWN", count);
+        }
+        return result;
+    }
+
+    @Override
+    public long getParseNanos() {
+        return estimate(sampledParseNanos.sum());
+    }
+
+    @Override
+    public long getAggregateNanos() {
+        return estimate(sampledAggregateNanos.sum());
+    }
+
+    @Override
+    public long getClassifications() {
+        return classifications.sum();
+    }
+
+    @Override
+    public long getClassifyNanos() {
+        return classifyNanos.sum();
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        return getLinesRead() / getElapsedSeconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytesRead() / getElapsedSeconds();
+    }
+
+    /**
+     * Пересчитывает время, измеренное на выборке, на все разобранные строки
+     */
+    private long estimate(long sampledNanos) {
+        long sampleCount = samples.sum();
+        if (sampleCount == 0)
+            return 0;
+        long parsed = getLinesRead() - getLinesRejected() - getParseFailures();
+        return (long) ((double) sampledNanos / sampleCount * parsed);
+    }
+
+    /**
+     * Регистрирует счётчики в платформенном MBean сервере под именем ru.accesslogparser:type=IngestMetrics
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName("ru.accesslogparser:type=IngestMetrics"));
+        } catch (InstanceAlreadyExistsException ex) {
+            // Уже зарегистрирован
+        } catch (JMException ex) {
+            throw new IllegalStateException("Не удалось зарегистрировать MBean: " + ex, ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IngestMetrics {lines=%,d, rejected=%,d, failures=%,d %s, bytes=%,d (%,.0f байт/с, %,.0f строк/с)"
+                        + ", parse=%,d мс, aggregate=%,d мс, classify=%,d мс (%,d), elapsed=%,.1f с}",
+                getLinesRead(), getLinesRejected(), getParseFailures(), getParseFailuresByField(), getBytesRead(),
+                getBytesPerSecond(), getLinesPerSecond(), getParseNanos() / 1_000_000, getAggregateNanos() / 1_000_000,
+                getClassifyNanos() / 1_000_000, getClassifications(), getElapsedSeconds());
+    }
+}
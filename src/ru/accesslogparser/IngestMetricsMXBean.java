@@ -0,0 +1,59 @@
+package ru.accesslogparser;
+
+import java.util.Map;
+
+/**
+ * JMX интерфейс счётчиков разбора лога {@link IngestMetrics}
+ */
+public interface IngestMetricsMXBean {
+    long getLinesRead();
+
+    /**
+     * Строки, отброшенные фильтром {@link LogFilter}
+     */
+    long getLinesRejected();
+
+    /**
+     * Прочитанный объём: размер строк в байтах файла без переводов строки, поэтому не зависит от того,
+     * разделены строки LF или CRLF
+     */
+    long getBytesRead();
+
+    long getParseFailures();
+
+    /**
+     * Количество ошибок разбора по имени поля {@link LogField} (UNKNOWN - поле не определено, например, строка слишком длинная)
+     */
+    Map<String, Long> getParseFailuresByField();
+
+    /**
+     * Оценка суммарного времени разбора строк, наносекунды
+     */
+    long getParseNanos();
+
+    /**
+     * Оценка суммарного времени обработки разобранных записей (подсчёта статистики), наносекунды
+     */
+    long getAggregateNanos();
+
+    /**
+     * Количество определений типа UserAgent (промахов кэша)
+     */
+    long getClassifications();
+
+    /**
+     * Суммарное время определения типа UserAgent, наносекунды
+     */
+    long getClassifyNanos();
+
+    /**
+     * Время с создания или последнего сброса счётчиков
+     */
+    double getElapsedSeconds();
+
+    double getLinesPerSecond();
+
+    double getBytesPerSecond();
+
+    void reset();
+}
@@ -0,0 +1,84 @@
+package ru.accesslogparser;
+
+/**
+ * Запись лога, которая хранит исходную строку и границы полей в ней, а ip адрес, путь, referer
+ * и UserAgent разбирает только при первом обращении и запоминает. Время, код ответа и размер разобраны сразу.
+ * Отчёты, которым нужны только время, код и размер (например, трафик или нагрузка за последние минуты),
+ * не тратят время на создание строк и определение браузера (см. {@link TrafficStatistics}).
+ * Создаётся {@link CombinedLogParser} в ленивом режиме. Поля разбираются через разборщик, создавший запись:
+ * его кэш UserAgent потокобезопасен, а словарь в ленивом режиме может быть только {@link ConcurrentFieldDictionary}.
+ * Разобранные значения неизменяемы, поэтому запись можно читать из нескольких потоков:
+ * в худшем случае поле разберётся повторно
+ */
+final class LazyLogEntry extends LogEntry {
+    private final CombinedLogParser parser;
+    private final String row;
+    private final int ipStart;
+    private final int ipEnd;
+    private final int requestStart;
+    private final int requestEnd;
+    private final int refererStart;
+    private final int refererEnd;
+    private final int agentStart;
+    private final int agentEnd;
+
+    private String ipAddr;
+    private String path;
+    private String referer;
+    private UserAgent userAgent;
+
+    LazyLogEntry(CombinedLogParser parser, String row, LogTime time, int responseCode, int responseSize,
+                 int ipStart, int ipEnd, int requestStart, int requestEnd, int refererStart, int refererEnd, int agentStart, int agentEnd) {
+        super(null, time, null, null, responseCode, responseSize, null, null);
+        this.parser = parser;
+        this.row = row;
+        this.ipStart = ipStart;
+        this.ipEnd = ipEnd;
+        this.requestStart = requestStart;
+        this.requestEnd = requestEnd;
+        this.refererStart = refererStart;
+        this.refererEnd = refererEnd;
+        this.agentStart = agentStart;
+        this.agentEnd = agentEnd;
+    }
+
+    @Override
+    public String getIpAddr() {
+        String value = ipAddr;
+        if (value == null)
+            ipAddr = value = parser.parseText(row, ipStart, ipEnd);
+        return value;
+    }
+
+    /**
+     * Метод не запоминается: он определяется по первым символам запроса без создания объектов
+     */
+    @Override
+    public HttpMethod getMethod() {
+        return CombinedLogParser.parseMethod(row, requestStart, requestEnd);
+    }
+
+    @Override
+    public String getPath() {
+        String value = path;
+        if (value == null)
+            path = value = parser.parsePath(row, requestStart, requestEnd, getMethod());
+        return value;
+    }
+
+    @Override
+    public String getReferer() {
+        String value = referer;
+        if (value == null)
+            referer = value = parser.parseText(row, refererStart, refererEnd);
+        return value;
+    }
+
+    @Override
+    public UserAgent getUserAgent() {
+        UserAgent value = userAgent;
+        if (value == null)
+            userAgent = value = parser.parseUserAgent(row, agentStart, agentEnd);
+        return value;
+    }
+}
@@ -0,0 +1,138 @@
+package ru.accesslogparser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Конвейер для последовательных источников строк (сжатый файл, поток): текущий поток читает строки
+ * и передаёт их пачками через ограниченную очередь потокам обработки, каждый поток наполняет свой накопитель.
+ * Пачки уменьшают затраты на передачу между потоками, а ограниченная очередь не даёт чтению
+ * уйти далеко вперёд обработки: когда очередь заполнена, чтение ждёт
+ */
+class LinePipeline {
+    /**
+     * Пустая пачка - признак конца строк для потока обработки
+     */
+    private static final String[] END = new String[0];
+
+    private final int workers;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final ThreadFactory threadFactory;
+
+    /**
+     * @param workers - количество потоков обработки
+     * @param batchSize - количество строк в одной пачке
+     * @param queueCapacity - максимальное количество пачек, ожидающих обработки
+     * @param threadFactory - создаёт потоки обработки (например, виртуальные потоки, если они доступны)
+     */
+    LinePipeline(int workers, int batchSize, int queueCapacity, ThreadFactory threadFactory) {
+        if (workers < 1 || batchSize < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("Параметры конвейера должны быть положительными");
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Читает все строки и обрабатывает их в потоках конвейера
+     * @param reader - источник строк, читается в текущем потоке
+     * @param partialFactory - создаёт накопитель для потока обработки
+     * @param handler - обрабатывает строку, добавляя результат в накопитель
+     * @return - накопители потоков обработки; порядок строк между накопителями не сохраняется
+     */
+    <T> List<T> run(BufferedReader reader, Supplier<T> partialFactory, BiConsumer<T, String> handler) throws IOException {
+        BlockingQueue<String[]> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<T> partials = new ArrayList<>(workers);
+        List<Thread> threads = new ArrayList<>(workers);
+
+        for (int i = 0; i < workers; i++) {
+            T partial = partialFactory.get();
+            partials.add(partial);
+            Thread thread = threadFactory.newThread(() -> {
+                try {
+                    for (String[] batch = queue.take(); batch != END; batch = queue.take()) {
+                        for (String line : batch) {
+                            if (line == null)
+                                break;
+                            handler.accept(partial, line);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    // Необработанные строки остались в очереди: накопитель неполный, а чтение ждало бы место в очереди
+                    failure.compareAndSet(null, new InterruptedIOException("Поток обработки прерван"));
+                    Thread.currentThread().interrupt();
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            String[] batch = new String[batchSize];
+            int size = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch[size++] = line;
+                if (size == batchSize) {
+                    put(queue, batch, failure);
+                    batch = new String[batchSize];
+                    size = 0;
+                }
+            }
+            if (size > 0)
+                put(queue, Arrays.copyOf(batch, size), failure);
+            for (int i = 0; i < workers; i++)
+                put(queue, END, failure);
+
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Чтение прервано");
+        } finally {
+            for (Thread thread : threads)
+                thread.interrupt();
+        }
+
+        rethrow(failure.get());
+        return partials;
+    }
+
+    /**
+     * Передаёт пачку в очередь, ожидая места. Если поток обработки завершился с ошибкой,
+     * ожидание прекращается, иначе чтение остановилось бы навсегда
+     */
+    private static void put(BlockingQueue<String[]> queue, String[] batch, AtomicReference<Throwable> failure) throws IOException, InterruptedException {
+        rethrow(failure.get());
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS))
+            rethrow(failure.get());
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure == null)
+            return;
+        if (failure instanceof IOException ioException)
+            throw ioException;
+        if (failure instanceof RuntimeException runtimeException)
+            throw runtimeException;
+        if (failure instanceof Error error)
+            throw error;
+        throw new IOException(failure);
+    }
+}
@@ -0,0 +1,153 @@
+package ru.accesslogparser;
+
+/**
+ * Последовательно выделяет поля строки лога в формате combined, не создавая строк.
+ * Работает с любой {@link CharSequence}: строкой или байтами строки {@link ByteLine}.
+ * Границы токенов определяются так же, как в {@link RegexLogParser}: слово без пробелов, кавычек и '[',
+ * текст в [квадратных скобках] или текст в "кавычках"; непарный ограничитель пропускается.
+ * Используется {@link CombinedLogParser} для разбора и фильтрами {@link LogFilters} для решения по сырой строке
+ */
+final class LineTokenizer {
+    private static final LogField[] FIELDS = LogField.values();
+
+    private final CharSequence row;
+    private final int length;
+    private int pos;
+    private int count;
+
+    private LogField field;
+    private int tokenStart;
+    private int start;
+    private int end;
+    private char kind;
+
+    LineTokenizer(CharSequence row) {
+        this.row = row;
+        this.length = row.length();
+    }
+
+    /**
+     * Переходит к следующему полю
+     * @return - false, если строка закончилась или все поля уже выделены
+     */
+    boolean next() {
+        if (count == FIELDS.length)
+            return false;
+
+        while (pos < length) {
+            char ch = row.charAt(pos);
+            if (ch == ' ') {
+                pos++;
+                continue;
+            }
+
+            if (ch == '[' || ch == '"') {
+                int close = indexOf(ch == '[' ? ']' : '"', pos + 1);
+                if (close < 0) {
+                    // Непарный ограничитель пропускается, как и при поиске по regex
+                    pos++;
+                    continue;
+                }
+                kind = ch;
+                tokenStart = pos;
+                start = pos + 1;
+                end = close;
+                pos = close + 1;
+            } else {
+                kind = 0;
+                tokenStart = pos;
+                start = pos;
+                end = pos + 1;
+                while (end < length && (ch = row.charAt(end)) != ' ' && ch != '"' && ch != '[')
+                    end++;
+                pos = end;
+            }
+
+            field = FIELDS[count++];
+            return true;
+        }
+        return false;
+    }
+
+    private int indexOf(char ch, int from) {
+        for (int i = from; i < length; i++) {
+            if (row.charAt(i) == ch)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Пропускает поля до заданного
+     * @return - false, если поле в строке отсутствует
+     */
+    boolean advanceTo(LogField target) {
+        while (next()) {
+            if (field == target)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Количество выделенных полей
+     */
+    int count() {
+        return count;
+    }
+
+    LogField field() {
+        return field;
+    }
+
+    /**
+     * Начало токена вместе с ограничителем
+     */
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Позиция сразу за токеном вместе с ограничителем
+     */
+    int tokenEnd() {
+        return pos;
+    }
+
+    /**
+     * Начало содержимого токена без ограничителя
+     */
+    int start() {
+        return start;
+    }
+
+    /**
+     * Конец содержимого токена без ограничителя
+     */
+    int end() {
+        return end;
+    }
+
+    /**
+     * Ограничитель токена: '[', '"' или 0 для слова
+     */
+    char kind() {
+        return kind;
+    }
+
+    /**
+     * Как {@link String#regionMatches(int, String, int, int)}, но для любой {@link CharSequence}
+     */
+    static boolean regionMatches(CharSequence text, int offset, String other, int otherOffset, int length) {
+        if (text instanceof String string)
+            return string.regionMatches(offset, other, otherOffset, length);
+
+        if (offset < 0 || offset + length > text.length())
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(offset + i) != other.charAt(otherOffset + i))
+                return false;
+        }
+        return true;
+    }
+}
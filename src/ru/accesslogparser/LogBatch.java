@@ -0,0 +1,155 @@
+package ru.accesslogparser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Разбор набора лог-файлов (например, ротированных access.log.N.gz) в пуле потоков.
+ * Каждый файл целиком читается, при необходимости распаковывается и разбирается одним потоком в свой накопитель.
+ * Одновременно обрабатывается не больше заданного количества файлов, а готовые накопители сразу
+ * объединяются с общим результатом, поэтому память не зависит от количества файлов
+ */
+class LogBatch {
+    /**
+     * Размер кэша UserAgent одного потока разбора
+     */
+    private static final int USER_AGENT_CACHE_SIZE = 4096;
+
+    private final List<Path> files;
+    private final Checkable check;
+    private final LogFilter filter;
+    private final BadLineReporter badLines;
+    /**
+     * Разбирать строки в {@link LazyLogEntry}
+     */
+    private final boolean lazy;
+
+    /**
+     * @param files - файлы для разбора
+     * @param checkString - проверка допустимости строки перед разбором, см. {@link LogFile}
+     * @param filter - выборка строк или null
+     * @param badLines - общий для всех файлов учёт строк, не прошедших проверку или разбор
+     * @param lazy - разбирать строки в {@link LazyLogEntry}, если накопителю нужны только время, код и размер ответа
+     */
+    LogBatch(List<Path> files, Checkable checkString, LogFilter filter, BadLineReporter badLines, boolean lazy) {
+        this.files = new ArrayList<>(files);
+        this.check = checkString;
+        this.filter = filter;
+        this.badLines = badLines;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Находит файлы по пути к каталогу (все файлы каталога) или по маске имени файла ("logs/access.log*").
+     * Файлы снимков {@link LogSnapshot} пропускаются
+     * @param pattern - каталог или путь с маской в имени файла
+     * @return - найденные файлы, отсортированные по имени
+     */
+    static List<Path> resolve(String pattern) throws IOException {
+        Path path = Path.of(pattern);
+        Path directory;
+        PathMatcher matcher;
+
+        if (Files.isDirectory(path)) {
+            directory = path;
+            matcher = file -> true;
+        } else {
+            directory = (path.getParent() == null) ? Path.of(".") : path.getParent();
+            matcher = directory.getFileSystem().getPathMatcher("glob:" + path.getFileName());
+        }
+
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file) && matcher.matches(file.getFileName())
+                        && !file.getFileName().toString().endsWith(LogSnapshot.EXTENSION))
+                    result.add(file);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Разбирает файлы параллельно, для каждого файла создаётся свой накопитель (например, {@link Statistics}).
+     * Накопители объединяются по мере готовности, порядок объединения не определён.
+     * Ошибка чтения любого файла прерывает разбор остальных: неполный результат не выдаётся за полный.
+     * Разборщик и кэш UserAgent создаются один раз на поток и переиспользуются для всех его файлов
+     * @param threads - количество потоков разбора
+     * @param maxInFlight - наибольшее количество одновременно обрабатываемых файлов и необъединённых накопителей
+     * @param partialFactory - создаёт накопитель для файла
+     * @param combiner - объединяет два накопителя и возвращает результат
+     * @return - объединённый накопитель
+     * @throws IOException - ошибка чтения или распаковки одного из файлов
+     */
+    <T extends Consumer<? super LogEntry>> T read(int threads, int maxInFlight, Supplier<T> partialFactory, BinaryOperator<T> combiner) throws IOException {
+        if (threads <= 0 || maxInFlight <= 0)
+            throw new IllegalArgumentException("Количество потоков и файлов в обработке должно быть больше нуля: " + threads + ", " + maxInFlight);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        ThreadLocal<CombinedLogParser> parsers = ThreadLocal.withInitial(
+                () -> new CombinedLogParser(new UserAgentCache(USER_AGENT_CACHE_SIZE), null, lazy));
+        T result = partialFactory.get();
+
+        try {
+            int submitted = 0;
+            int completed = 0;
+
+            while (completed < files.size()) {
+                // Новые файлы берутся в работу, только когда освободилось место
+                while (submitted < files.size() && submitted - completed < maxInFlight) {
+                    Path file = files.get(submitted++);
+                    completion.submit(() -> readFile(file, parsers.get(), partialFactory));
+                }
+
+                result = combiner.apply(result, completion.take().get());
+                completed++;
+            }
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Чтение файлов прервано");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException ioException)
+                throw ioException;
+            if (cause instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (cause instanceof Error error)
+                throw error;
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T extends Consumer<? super LogEntry>> T readFile(Path file, CombinedLogParser parser, Supplier<T> partialFactory) throws IOException {
+        T partial = partialFactory.get();
+        try {
+            new LogFile(file.toFile(), check, filter, parser, IngestMetrics.getDefault(), badLines).read(partial);
+        } catch (IOException ex) {
+            throw new IOException("Ошибка чтения файла " + file + ": " + ex.getMessage(), ex);
+        }
+        return partial;
+    }
+
+    List<Path> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+}
@@ -0,0 +1,300 @@
+package ru.accesslogparser;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Колоночное хранилище разобранных записей лога.
+ * Каждое поле хранится в отдельном массиве примитивов, строковые поля (ip, путь, referer) - идентификаторами
+ * из {@link FieldDictionary}, ОС и браузер - порядковыми номерами перечислений.
+ * Записи читаются через {@link Cursor}. Не потокобезопасно: при параллельном разборе каждый поток
+ * заполняет своё хранилище, затем они объединяются через {@link #merge(LogColumns)}
+ */
+public class LogColumns implements Consumer<LogEntry> {
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+    private static final UserAgent.OS[] OS_VALUES = UserAgent.OS.values();
+    private static final UserAgent.Browsers[] BROWSER_VALUES = UserAgent.Browsers.values();
+    /**
+     * Размер одной записи в снимке, см. {@link #write(LogSnapshot.Output)}
+     */
+    static final int ROW_BYTES = Long.BYTES + Short.BYTES + 5 * Integer.BYTES + 4;
+
+    private final FieldDictionary dictionary;
+    private int size;
+
+    /**
+     * Время запроса в секундах от эпохи
+     */
+    private long[] timestamps;
+    /**
+     * Смещение часового пояса в минутах
+     */
+    private short[] offsetMinutes;
+    /**
+     * Код ответа целиком: разборщик принимает любое int значение
+     */
+    private int[] responseCodes;
+    private int[] responseSizes;
+    /**
+     * Порядковый номер {@link HttpMethod}, -1 - метод не распознан
+     */
+    private byte[] methods;
+    private int[] ipIds;
+    /**
+     * Идентификатор пути, -1 - путь отсутствует
+     */
+    private int[] pathIds;
+    private int[] refererIds;
+    private byte[] os;
+    private byte[] browsers;
+    private boolean[] bots;
+
+    public LogColumns() {
+        this(new ConcurrentFieldDictionary());
+    }
+
+    /**
+     * @param dictionary - словарь строковых полей, может быть общим для нескольких хранилищ
+     */
+    public LogColumns(FieldDictionary dictionary) {
+        this.dictionary = dictionary;
+        allocate(1024);
+    }
+
+    /**
+     * Добавляет запись в конец хранилища
+     */
+    @Override
+    public void accept(LogEntry entry) {
+        ensureCapacity(size + 1);
+
+        LogTime time = entry.getLogTime();
+        timestamps[size] = time.getEpochSecond();
+        offsetMinutes[size] = (short) (time.getOffsetSeconds() / 60);
+        responseCodes[size] = entry.getResponseCode();
+        responseSizes[size] = entry.getResponseSize();
+        methods[size] = (byte) (entry.getMethod() == null ? -1 : entry.getMethod().ordinal());
+        ipIds[size] = dictionary.idOf(entry.getIpAddr());
+        pathIds[size] = entry.getPath() == null ? -1 : dictionary.idOf(entry.getPath());
+        refererIds[size] = dictionary.idOf(entry.getReferer());
+        os[size] = (byte) entry.getUserAgent().getOsType().ordinal();
+        browsers[size] = (byte) entry.getUserAgent().getBrowserType().ordinal();
+        bots[size] = entry.getUserAgent().isBot();
+        size++;
+    }
+
+    /**
+     * Дописывает в конец записи другого хранилища
+     * @return - текущее хранилище
+     */
+    public LogColumns merge(LogColumns other) {
+        ensureCapacity(size + other.size);
+
+        System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+        System.arraycopy(other.offsetMinutes, 0, offsetMinutes, size, other.size);
+        System.arraycopy(other.responseCodes, 0, responseCodes, size, other.size);
+        System.arraycopy(other.responseSizes, 0, responseSizes, size, other.size);
+        System.arraycopy(other.methods, 0, methods, size, other.size);
+        System.arraycopy(other.os, 0, os, size, other.size);
+        System.arraycopy(other.browsers, 0, browsers, size, other.size);
+        System.arraycopy(other.bots, 0, bots, size, other.size);
+
+        if (other.dictionary == dictionary) {
+            System.arraycopy(other.ipIds, 0, ipIds, size, other.size);
+            System.arraycopy(other.pathIds, 0, pathIds, size, other.size);
+            System.arraycopy(other.refererIds, 0, refererIds, size, other.size);
+        } else {
+            // Идентификаторы другого словаря переводятся в идентификаторы текущего
+            for (int i = 0; i < other.size; i++) {
+                ipIds[size + i] = dictionary.idOf(other.dictionary.valueOf(other.ipIds[i]));
+                pathIds[size + i] = other.pathIds[i] < 0 ? -1 : dictionary.idOf(other.dictionary.valueOf(other.pathIds[i]));
+                refererIds[size + i] = dictionary.idOf(other.dictionary.valueOf(other.refererIds[i]));
+            }
+        }
+
+        size += other.size;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public FieldDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Возвращает курсор, установленный перед первой записью
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Записывает столбцы в снимок, каждый столбец целиком
+     */
+    void write(LogSnapshot.Output out) throws IOException {
+        out.writeLongs(timestamps, size);
+        out.writeShorts(offsetMinutes, size);
+        out.writeInts(responseCodes, size);
+        out.writeInts(responseSizes, size);
+        out.writeBytes(methods, size);
+        out.writeInts(ipIds, size);
+        out.writeInts(pathIds, size);
+        out.writeInts(refererIds, size);
+        out.writeBytes(os, size);
+        out.writeBytes(browsers, size);
+        out.writeBooleans(bots, size);
+    }
+
+    /**
+     * Заменяет содержимое хранилища столбцами из снимка в порядке {@link #write(LogSnapshot.Output)}
+     * @param rows - количество записей в снимке
+     */
+    void read(LogSnapshot.Input in, int rows) throws IOException {
+        allocate(Math.max(rows, 1));
+        in.readLongs(timestamps, rows);
+        in.readShorts(offsetMinutes, rows);
+        in.readInts(responseCodes, rows);
+        in.readInts(responseSizes, rows);
+        in.readBytes(methods, rows);
+        in.readInts(ipIds, rows);
+        in.readInts(pathIds, rows);
+        in.readInts(refererIds, rows);
+        in.readBytes(os, rows);
+        in.readBytes(browsers, rows);
+        in.readBooleans(bots, rows);
+
+        // Номера строк и перечислений из повреждённого снимка не должны выходить за пределы словаря и перечислений
+        for (int i = 0; i < rows; i++) {
+            checkRange(ipIds[i], 0, dictionary.size());
+            checkRange(pathIds[i], -1, dictionary.size());
+            checkRange(refererIds[i], 0, dictionary.size());
+            checkRange(methods[i], -1, METHODS.length);
+            checkRange(os[i], 0, OS_VALUES.length);
+            checkRange(browsers[i], 0, BROWSER_VALUES.length);
+        }
+        size = rows;
+    }
+
+    /**
+     * Проверяет номер из снимка: от min до limit не включительно
+     */
+    private static void checkRange(int value, int min, int limit) throws StreamCorruptedException {
+        if (value < min || value >= limit)
+            throw new StreamCorruptedException("Неверный номер в снимке лога: " + value);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > timestamps.length)
+            resize(Math.max(capacity, timestamps.length * 2));
+    }
+
+    private void allocate(int capacity) {
+        timestamps = new long[capacity];
+        offsetMinutes = new short[capacity];
+        responseCodes = new int[capacity];
+        responseSizes = new int[capacity];
+        methods = new byte[capacity];
+        ipIds = new int[capacity];
+        pathIds = new int[capacity];
+        refererIds = new int[capacity];
+        os = new byte[capacity];
+        browsers = new byte[capacity];
+        bots = new boolean[capacity];
+    }
+
+    private void resize(int capacity) {
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        offsetMinutes = Arrays.copyOf(offsetMinutes, capacity);
+        responseCodes = Arrays.copyOf(responseCodes, capacity);
+        responseSizes = Arrays.copyOf(responseSizes, capacity);
+        methods = Arrays.copyOf(methods, capacity);
+        ipIds = Arrays.copyOf(ipIds, capacity);
+        pathIds = Arrays.copyOf(pathIds, capacity);
+        refererIds = Arrays.copyOf(refererIds, capacity);
+        os = Arrays.copyOf(os, capacity);
+        browsers = Arrays.copyOf(browsers, capacity);
+        bots = Arrays.copyOf(bots, capacity);
+    }
+
+    /**
+     * Последовательный просмотр записей хранилища без создания объектов на каждую запись
+     */
+    public class Cursor {
+        private int row = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Переходит к следующей записи
+         * @return - false, если записей больше нет
+         */
+        public boolean next() {
+            if (row + 1 >= size)
+                return false;
+            row++;
+            return true;
+        }
+
+        public long getTimestamp() {
+            return timestamps[row];
+        }
+
+        public int getOffsetSeconds() {
+            return offsetMinutes[row] * 60;
+        }
+
+        public int getResponseCode() {
+            return responseCodes[row];
+        }
+
+        public int getResponseSize() {
+            return responseSizes[row];
+        }
+
+        public HttpMethod getMethod() {
+            return methods[row] < 0 ? null : METHODS[methods[row]];
+        }
+
+        public int getIpId() {
+            return ipIds[row];
+        }
+
+        public String getIpAddr() {
+            return dictionary.valueOf(ipIds[row]);
+        }
+
+        public int getPathId() {
+            return pathIds[row];
+        }
+
+        public String getPath() {
+            return pathIds[row] < 0 ? null : dictionary.valueOf(pathIds[row]);
+        }
+
+        public int getRefererId() {
+            return refererIds[row];
+        }
+
+        public String getReferer() {
+            return dictionary.valueOf(refererIds[row]);
+        }
+
+        public UserAgent.OS getOs() {
+            return OS_VALUES[os[row]];
+        }
+
+        public UserAgent.Browsers getBrowser() {
+            return BROWSER_VALUES[browsers[row]];
+        }
+
+        public boolean isBot() {
+            return bots[row];
+        }
+    }
+}
@@ -1,15 +1,13 @@
 package ru.accesslogparser;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Содержит данные из разобранной строки лог-файла
  */
 public class LogEntry {
+    private static final LogParser PARSER = new CombinedLogParser();
+
     /**
      * IP-адрес клиента
      */
@@ -17,7 +15,7 @@ public class LogEntry {
     /**
      * Дата/время запроса
      */
-    private LocalDateTime time;
+    private LogTime time;
     private HttpMethod method;
     private String path;
     private int responseCode;
@@ -34,43 +32,50 @@ public class LogEntry {
      * @throws LogEntryCreateException
      */
     public LogEntry(String row) throws LogEntryCreateException {
-        int count = 1;
-        Pattern pattern = Pattern.compile("([^ \"\\[]+)|(\\[(?<brackets>[^]]*)])|(\"(?<text>[^\"]*)\")");
-        Matcher matcher = pattern.matcher(row);
-
-        while (matcher.find()) {
-            try {
-                switch (count) {
-                    case 1 -> this.ipAddr = matcher.group();
-                    case 4 ->
-                        // Теряем данные о TZ из-за LocalDateTime
-                        this.time = LocalDateTime.parse(matcher.group("brackets"), DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US));
-                    case 5 -> {
-                        this.path = matcher.group("text");
-                        for (HttpMethod meth : HttpMethod.values()) {
-                            if (path.indexOf(" ") > 0 && meth.name().equals(path.substring(0, path.indexOf(" ")))) {
-                                this.method = meth;
-                                this.path = path.substring(path.indexOf(" ")+1);
-                                break;
-                            }
-                        }
-                    }
-                    case 6 -> this.responseCode = Integer.parseInt(matcher.group());
-                    case 7 -> this.responseSize = Integer.parseInt(matcher.group());
-                    case 8 -> this.referer = matcher.group("text");
-                    case 9 -> this.userAgent = new UserAgent(matcher.group("text"));
-                }
-            } catch (Exception ex) {
-                throw new LogEntryCreateException("Ошибка при разборе строки: " + ex, ex);
-            }
-            count++;
-        }
+        this(PARSER.parse(row));
+    }
+
+    LogEntry(String ipAddr, LogTime time, HttpMethod method, String path, int responseCode, int responseSize, String referer, UserAgent userAgent) {
+        this.ipAddr = ipAddr;
+        this.time = time;
+        this.method = method;
+        this.path = path;
+        this.responseCode = responseCode;
+        this.responseSize = responseSize;
+        this.referer = referer;
+        this.userAgent = userAgent;
+    }
+
+    private LogEntry(LogEntry other) {
+        this(other.getIpAddr(), other.time, other.getMethod(), other.getPath(), other.responseCode, other.responseSize, other.getReferer(), other.getUserAgent());
     }
 
+    /**
+     * Время запроса, как оно записано в логе (без часового пояса)
+     */
     public LocalDateTime getTime() {
+        return time.getLocalTime();
+    }
+
+    /**
+     * Время запроса в секундах от 1970-01-01T00:00:00Z с учётом часового пояса
+     */
+    public long getTimestamp() {
+        return time.getEpochSecond();
+    }
+
+    LogTime getLogTime() {
         return time;
     }
 
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
     public int getResponseSize() {
         return responseSize;
     }
@@ -94,18 +99,14 @@ public class LogEntry {
     @Override
     public String toString() {
         return "LogEntry {" +
-                "ip='" + ipAddr + '\'' +
-                ", reqDate=" + time +
-                ", reqType=" + method +
-                ", reqPath='" + path + '\'' +
+                "ip='" + getIpAddr() + '\'' +
+                ", reqDate=" + time.getLocalTime() +
+                ", reqType=" + getMethod() +
+                ", reqPath='" + getPath() + '\'' +
                 ", respHttpCode=" + responseCode +
                 ", respDataSize=" + responseSize +
-                ", referer='" + referer + '\'' +
-                ", userAgent=" + userAgent +
+                ", referer='" + getReferer() + '\'' +
+                ", userAgent=" + getUserAgent() +
                 '}';
     }
 }
-/**
- Используемые в рамках задачи методы
- */
-enum HttpMethod {POST, GET, PUT, HEAD}
\ No newline at end of file
@@ -1,7 +1,25 @@
 package ru.accesslogparser;
 
+/**
+ * Ошибка разбора строки лога. Повреждённые строки в логе - обычное дело, поэтому исключение
+ * создаётся без стека вызовов: его создание не должно замедлять разбор
+ */
 public class LogEntryCreateException extends Exception {
+    /**
+     * Поле, при разборе которого возникла ошибка (null, если неизвестно)
+     */
+    private final LogField field;
+
     public LogEntryCreateException(String message, Throwable cause) {
-        super(message, cause);
+        this(null, message, cause);
+    }
+
+    public LogEntryCreateException(LogField field, String message, Throwable cause) {
+        super(message, cause, false, false);
+        this.field = field;
+    }
+
+    public LogField getField() {
+        return field;
     }
 }
@@ -0,0 +1,16 @@
+package ru.accesslogparser;
+
+/**
+ * Поля строки лога в формате combined в порядке их следования
+ */
+public enum LogField {
+      IP_ADDR
+    , IDENT
+    , USER
+    , TIME
+    , REQUEST
+    , RESPONSE_CODE
+    , RESPONSE_SIZE
+    , REFERER
+    , USER_AGENT
+}
@@ -2,44 +2,418 @@ package ru.accesslogparser;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 /**
  *
  */
 class LogFile {
+    /**
+     * Количество строк в пачке, передаваемой потокам разбора в {@link #readPipelined}
+     */
+    private static final int PIPELINE_BATCH_SIZE = 1024;
+    /**
+     * Размер кэша декодированных строк у каждого потока разбора по байтам
+     */
+    private static final int STRING_CACHE_SIZE = 1 << 16;
+    /**
+     * Кодировка файла, в ней же считается размер строк, прочитанных как String
+     */
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final boolean ASCII_COMPATIBLE = ByteLine.isAsciiCompatible(CHARSET);
+
     private final File file;
+    /**
+     * Проверка допустимости строки (например, длины); строка, не прошедшая её, считается ошибочной
+     */
     private final Checkable check;
+    /**
+     * Причина отклонения строки проверкой check, составляется один раз
+     */
+    private final String checkReason;
+    /**
+     * Выборка строк: отброшенные фильтром строки не ошибочны и только считаются
+     */
+    private final LogFilter filter;
+    private final LogParser parser;
+    private final IngestMetrics metrics;
+    private final BadLineReporter badLines;
     private final List<LogEntry> entries = new ArrayList<>();
 
     public LogFile(File file, Checkable checkString) {
+        this(file, checkString, new CombinedLogParser());
+    }
+
+    public LogFile(File file, Checkable checkString, LogParser parser) {
+        this(file, checkString, parser, IngestMetrics.getDefault());
+    }
+
+    /**
+     * @param metrics - счётчики прочитанных строк, ошибок и времени разбора
+     */
+    public LogFile(File file, Checkable checkString, LogParser parser, IngestMetrics metrics) {
+        this(file, checkString, parser, metrics, new BadLineReporter(BadLinePolicy.COUNT));
+    }
+
+    /**
+     * @param checkString - проверка строки перед разбором; если это {@link LogFilter}, строки выбираются фильтром,
+     *                    иначе строки, не прошедшие проверку, учитываются как ошибочные
+     * @param badLines - учёт строк, не прошедших проверку или разбор
+     */
+    LogFile(File file, Checkable checkString, LogParser parser, IngestMetrics metrics, BadLineReporter badLines) {
+        this(file, (checkString instanceof LogFilter) ? null : checkString,
+                (checkString instanceof LogFilter logFilter) ? logFilter : null, parser, metrics, badLines);
+    }
+
+    /**
+     * @param check - проверка допустимости строки или null; строки, не прошедшие её, передаются в badLines
+     * @param filter - выборка строк или null; разобранная запись дополнительно проверяется {@link LogFilter#test(LogEntry)}
+     * @param badLines - учёт строк, не прошедших проверку или разбор
+     */
+    LogFile(File file, Checkable check, LogFilter filter, LogParser parser, IngestMetrics metrics, BadLineReporter badLines) {
         this.file = file;
-        this.check = checkString;
+        this.check = check;
+        this.checkReason = (check == null) ? null : "Строка не прошла проверку " + check;
+        this.filter = filter;
+        this.parser = parser;
+        this.metrics = metrics;
+        this.badLines = badLines;
     }
 
     public void read() throws IOException {
+        read(entries::add);
+    }
+
+    /**
+     * Читает файл и передаёт разобранные записи обработчику, не сохраняя их.
+     * Несколько обработчиков объединяются через {@link Consumer#andThen(Consumer)}
+     * @param consumer - обработчик записей
+     */
+    public void read(Consumer<? super LogEntry> consumer) throws IOException {
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        try (BufferedReader reader = openReader()) {
             String text;
 
             while ((text = reader.readLine()) != null) {
-                if (check != null && !check.checkString(text))
-                    continue;
-
-                try {
-                    entries.add(new LogEntry(text));
-                } catch (LogEntryCreateException ex) {
-                    // Просто пишем в консоль
-                    System.out.println(ex);
-                }
+                parseLine(text, consumer);
+            }
+        }
+    }
+
+    /**
+     * Отображает файл в память, делит его на части по границам строк и разбирает части параллельно.
+     * Записи добавляются в том же порядке, что и при {@link #read()}
+     * @param threads - количество потоков разбора
+     */
+    public void readMapped(int threads) throws IOException {
+        for (List<LogEntry> chunkEntries : this.<List<LogEntry>>readChunks(threads, ArrayList::new, List::add))
+            entries.addAll(chunkEntries);
+    }
+
+    /**
+     * Разбирает отображённый в память файл параллельно и передаёт записи обработчику, не сохраняя их.
+     * Обработчик вызывается из нескольких потоков одновременно и должен быть потокобезопасным.
+     * Сжатый файл разбирается конвейером {@link #readPipelined}
+     * @param threads - количество потоков разбора
+     * @param consumer - обработчик записей
+     */
+    public void readMapped(int threads, Consumer<? super LogEntry> consumer) throws IOException {
+        if (isCompressed())
+            readPipelined(threads, parserThreads(), () -> consumer, (first, second) -> first);
+        else
+            readChunks(threads, () -> consumer, Consumer::accept);
+    }
+
+    /**
+     * Разбирает отображённый в память файл параллельно, каждая часть файла наполняет свой накопитель
+     * (например, {@link Statistics}), после чего накопители объединяются в порядке следования частей.
+     * Сжатый файл разбирается конвейером {@link #readPipelined}
+     * @param threads - количество потоков разбора
+     * @param partialFactory - создаёт накопитель для части файла
+     * @param combiner - объединяет два накопителя и возвращает результат
+     * @return - объединённый накопитель
+     */
+    public <T extends Consumer<? super LogEntry>> T readMapped(int threads, Supplier<T> partialFactory, BinaryOperator<T> combiner) throws IOException {
+        if (isCompressed())
+            return readPipelined(threads, parserThreads(), partialFactory, combiner);
+
+        return combine(readChunks(threads, partialFactory, Consumer::accept), partialFactory, combiner);
+    }
+
+    /**
+     * Читает файл последовательно (в том числе сжатый) в текущем потоке и передаёт строки пачками
+     * через ограниченную очередь потокам разбора; каждый поток наполняет свой накопитель.
+     * Подходит для файлов, которые нельзя разделить на части. Порядок записей между накопителями не сохраняется
+     * @param workers - количество потоков разбора
+     * @param threadFactory - создаёт потоки разбора
+     * @param partialFactory - создаёт накопитель для потока разбора
+     * @param combiner - объединяет два накопителя и возвращает результат
+     * @return - объединённый накопитель
+     */
+    public <T extends Consumer<? super LogEntry>> T readPipelined(int workers, ThreadFactory threadFactory, Supplier<T> partialFactory, BinaryOperator<T> combiner) throws IOException {
+        LinePipeline pipeline = new LinePipeline(workers, PIPELINE_BATCH_SIZE, workers * 4, threadFactory);
+        try (BufferedReader reader = openReader()) {
+            return combine(pipeline.run(reader, partialFactory, (partial, text) -> parseLine(text, partial)), partialFactory, combiner);
+        }
+    }
+
+    /**
+     * Разбирает отображённый в память файл параллельно в колоночное хранилище с общим словарём
+     * @param threads - количество потоков разбора
+     */
+    public LogColumns readColumns(int threads) throws IOException {
+        FieldDictionary dictionary = new ConcurrentFieldDictionary();
+        return readMapped(threads, () -> new LogColumns(dictionary), LogColumns::merge);
+    }
+
+    /**
+     * Загружает записи из двоичного снимка, если он соответствует файлу, иначе разбирает файл
+     * и сохраняет снимок для следующих запусков. Ошибка записи снимка не прерывает работу
+     * @param threads - количество потоков разбора
+     * @param snapshot - путь к файлу снимка
+     */
+    public LogColumns readIndexed(int threads, Path snapshot) throws IOException {
+        LogColumns columns = LogSnapshot.read(file, snapshot);
+        if (columns != null)
+            return columns;
+
+        // Размер и время изменения запоминаются до разбора: если файл допишут во время чтения, снимок устареет
+        long size = file.length();
+        long modified = file.lastModified();
+        columns = readColumns(threads);
+
+        try {
+            LogSnapshot.write(columns, size, modified, snapshot);
+        } catch (IOException ex) {
+            System.out.println("Не удалось сохранить снимок лога: " + ex);
+        }
+        return columns;
+    }
+
+    /**
+     * Читает файл с начала и продолжает следить за ним, передавая обработчику дописываемые записи.
+     * Учитывает ротацию и усечение файла. Возвращает управление только при прерывании потока
+     * @param consumer - обработчик записей
+     * @param pollIntervalMillis - пауза между проверками файла, когда новых строк нет
+     */
+    public void follow(Consumer<? super LogEntry> consumer, long pollIntervalMillis) throws IOException, InterruptedException {
+        try (TailReader tail = new TailReader(file.toPath(), false)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (tail.poll(text -> parseLine(text, consumer)) == 0)
+                    Thread.sleep(pollIntervalMillis);
+            }
+            throw new InterruptedException();
+        }
+    }
+
+    private static <T> T combine(List<T> partials, Supplier<T> partialFactory, BinaryOperator<T> combiner) {
+        T result = null;
+        for (T partial : partials)
+            result = (result == null) ? partial : combiner.apply(result, partial);
+        return (result == null) ? partialFactory.get() : result;
+    }
+
+    /**
+     * Фабрика потоков разбора по умолчанию: фоновые потоки платформы
+     */
+    private static ThreadFactory parserThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "log-parser-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Признак сжатого gzip файла (по расширению .gz), такой файл читается только последовательно
+     * и разбирается конвейером {@link #readPipelined}
+     */
+    public boolean isCompressed() {
+        return file.getName().endsWith(".gz");
+    }
+
+    private BufferedReader openReader() throws IOException {
+        if (!isCompressed())
+            return new BufferedReader(new FileReader(file));
+
+        InputStream input = new FileInputStream(file);
+        try {
+            return new BufferedReader(new InputStreamReader(new GZIPInputStream(input, 64 * 1024)));
+        } catch (IOException ex) {
+            input.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Разбирает части файла в пуле потоков, для каждой части создаётся свой накопитель.
+     * Сжатый файл нельзя разделить на части, он разбирается целиком в текущем потоке
+     * @param threads - количество потоков разбора
+     * @param partialFactory - создаёт накопитель для части файла
+     * @param accumulator - добавляет запись в накопитель
+     * @return - накопители в порядке следования частей в файле
+     */
+    private <T> List<T> readChunks(int threads, Supplier<T> partialFactory, BiConsumer<T, LogEntry> accumulator) throws IOException {
+        if (isCompressed()) {
+            T partial = partialFactory.get();
+            read(entry -> accumulator.accept(partial, entry));
+            return List.of(partial);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Charset charset = CHARSET;
+            // Строки разбираются прямо из отображённых байтов, если кодировка и разборщик это позволяют.
+            // Ленивым записям нужна неизменяемая строка, поэтому они разбираются из декодированных строк
+            boolean bytes = parser instanceof CombinedLogParser combined && !combined.isLazy() && ByteLine.isAsciiCompatible(charset);
+            List<Future<T>> futures = new ArrayList<>();
+
+            for (FileChunk chunk : FileChunk.split(channel, threads)) {
+                futures.add(executor.submit(() -> {
+                    T partial = partialFactory.get();
+                    Consumer<LogEntry> sink = entry -> accumulator.accept(partial, entry);
+                    if (bytes)
+                        chunk.forEachLine(channel, new ByteLine(charset, new ByteStringCache(STRING_CACHE_SIZE)), line -> parseLine(line, sink));
+                    else
+                        chunk.forEachLine(channel, charset, text -> parseLine(text, sink));
+                    return partial;
+                }));
+            }
+
+            List<T> partials = new ArrayList<>(futures.size());
+            for (Future<T> future : futures)
+                partials.add(future.get());
+            return partials;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Чтение файла прервано");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException ioException)
+                throw ioException;
+            if (cause instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (cause instanceof Error error)
+                throw error;
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param text - строка или байты строки {@link ByteLine}; байты декодируются целиком, только если строку
+     *             нужно сохранить как отклонённую или проверка требует String
+     */
+    private void parseLine(CharSequence text, Consumer<? super LogEntry> consumer) {
+        metrics.lineRead(byteLength(text));
+        if (check != null && !check.checkLine(text)) {
+            metrics.parseFailed(null);
+            badLines.reject(text, null, checkReason);
+            return;
+        }
+        if (filter != null && !filter.checkLine(text)) {
+            metrics.lineRejected();
+            return;
+        }
+
+        boolean sampled = metrics.sample();
+        long start = sampled ? System.nanoTime() : 0;
+        LogEntry entry;
+        try {
+            entry = parse(text);
+        } catch (LogEntryCreateException ex) {
+            metrics.parseFailed(ex.getField());
+            badLines.reject(text, ex.getField(), ex.getMessage());
+            return;
+        }
+
+        if (filter != null && !filter.test(entry)) {
+            metrics.lineRejected();
+            return;
+        }
+
+        if (sampled) {
+            long parsed = System.nanoTime();
+            consumer.accept(entry);
+            metrics.recordSample(parsed - start, System.nanoTime() - parsed);
+        } else {
+            consumer.accept(entry);
+        }
+    }
+
+    /**
+     * Размер строки в байтах файла без перевода строки: у {@link ByteLine} это длина, а строку String
+     * с не-ASCII символами приходится кодировать заново
+     */
+    private static int byteLength(CharSequence text) {
+        if (text instanceof ByteLine)
+            return text.length();
+
+        String string = (String) text;
+        if (ASCII_COMPATIBLE) {
+            for (int i = 0; i < string.length(); i++) {
+                if (string.charAt(i) >= 0x80)
+                    return string.getBytes(CHARSET).length;
             }
+            return string.length();
         }
+        return string.getBytes(CHARSET).length;
+    }
+
+    private LogEntry parse(CharSequence text) throws LogEntryCreateException {
+        if (!(text instanceof ByteLine line))
+            return parser.parse((String) text);
+
+        try {
+            return ((CombinedLogParser) parser).parse(line);
+        } catch (LogEntryCreateException ex) {
+            // Не-ASCII цифры (например, арабские) разбираются только из декодированной строки, поэтому строка
+            // с не-ASCII байтами повторно разбирается как String: результат совпадает с обычным разбором.
+            // Строка из одних ASCII байтов разбирается по байтам так же, как строкой, и второй раз не разбирается
+            if (line.isAscii())
+                throw ex;
+            return parser.parse(line.toString());
+        }
+    }
+
+    /**
+     * Учёт строк, не прошедших разбор
+     */
+    BadLineReporter getBadLines() {
+        return badLines;
     }
 
+    /**
+     * Возвращает записи, накопленные методами {@link #read()} и {@link #readMapped(int)}
+     * @return - список только для чтения
+     */
     public List<LogEntry> getEntries() {
-        return new ArrayList<>(entries);
+        return Collections.unmodifiableList(entries);
     }
-}
\ No newline at end of file
+}
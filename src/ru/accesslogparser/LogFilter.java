@@ -0,0 +1,111 @@
+package ru.accesslogparser;
+
+import java.util.Objects;
+
+/**
+ * Фильтр строк лога. Решение принимается в два этапа: сначала по сырой строке ({@link #decide(CharSequence)}),
+ * чтобы отбросить заведомо неподходящие строки до разбора, затем по разобранной записи ({@link #test(LogEntry)}).
+ * Фильтры объединяются через {@link #and}, {@link #or} и {@link #negate}; цепочка прекращает проверку
+ * на первом фильтре, который определил результат
+ */
+public interface LogFilter extends Checkable {
+    /**
+     * Решение по сырой строке
+     */
+    enum Decision {
+        /** строка точно подходит */
+        ACCEPT,
+        /** строка точно не подходит, разбирать её не нужно */
+        REJECT,
+        /** по сырой строке решить нельзя, нужна разобранная запись */
+        UNKNOWN
+    }
+
+    /**
+     * Решает по сырой строке, не разбирая её целиком. Строка может быть не декодирована ({@link ByteLine}).
+     * По умолчанию решение откладывается до {@link #test(LogEntry)}
+     */
+    default Decision decide(CharSequence line) {
+        return Decision.UNKNOWN;
+    }
+
+    /**
+     * Окончательное решение по разобранной записи; для строк, принятых {@link #decide(CharSequence)}, должно быть таким же
+     */
+    boolean test(LogEntry entry);
+
+    /**
+     * Строка проходит проверку, если фильтр не отбросил её по сырому тексту
+     */
+    @Override
+    default boolean checkString(String str) {
+        return decide(str) != Decision.REJECT;
+    }
+
+    @Override
+    default boolean checkLine(CharSequence line) {
+        return decide(line) != Decision.REJECT;
+    }
+
+    default LogFilter and(LogFilter other) {
+        Objects.requireNonNull(other);
+        LogFilter self = this;
+        return new LogFilter() {
+            @Override
+            public Decision decide(CharSequence line) {
+                Decision first = self.decide(line);
+                if (first == Decision.REJECT)
+                    return first;
+                Decision second = other.decide(line);
+                return (first == Decision.ACCEPT) ? second : (second == Decision.REJECT) ? second : Decision.UNKNOWN;
+            }
+
+            @Override
+            public boolean test(LogEntry entry) {
+                return self.test(entry) && other.test(entry);
+            }
+        };
+    }
+
+    default LogFilter or(LogFilter other) {
+        Objects.requireNonNull(other);
+        LogFilter self = this;
+        return new LogFilter() {
+            @Override
+            public Decision decide(CharSequence line) {
+                Decision first = self.decide(line);
+                if (first == Decision.ACCEPT)
+                    return first;
+                Decision second = other.decide(line);
+                return (first == Decision.REJECT) ? second : (second == Decision.ACCEPT) ? second : Decision.UNKNOWN;
+            }
+
+            @Override
+            public boolean test(LogEntry entry) {
+                return self.test(entry) || other.test(entry);
+            }
+        };
+    }
+
+    /**
+     * Исключающий фильтр: пропускает строки, которые этот фильтр отбрасывает
+     */
+    default LogFilter negate() {
+        LogFilter self = this;
+        return new LogFilter() {
+            @Override
+            public Decision decide(CharSequence line) {
+                return switch (self.decide(line)) {
+                    case ACCEPT -> Decision.REJECT;
+                    case REJECT -> Decision.ACCEPT;
+                    case UNKNOWN -> Decision.UNKNOWN;
+                };
+            }
+
+            @Override
+            public boolean test(LogEntry entry) {
+                return !self.test(entry);
+            }
+        };
+    }
+}
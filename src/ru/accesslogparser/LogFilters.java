@@ -0,0 +1,225 @@
+package ru.accesslogparser;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Готовые фильтры строк лога. Фильтры по коду ответа, ip адресу и времени решают по сырой строке,
+ * выделяя только нужное поле через {@link LineTokenizer}, поэтому неподходящие строки не разбираются.
+ * Фильтры по методу и пути проверяют разобранную запись
+ */
+public final class LogFilters {
+    private LogFilters() {
+    }
+
+    /**
+     * Фильтр, пропускающий все строки
+     */
+    public static LogFilter all() {
+        return entry -> true;
+    }
+
+    /**
+     * Приводит проверку строки к фильтру: строка, не прошедшая проверку, отбрасывается до разбора
+     */
+    public static LogFilter of(Checkable check) {
+        Objects.requireNonNull(check);
+        if (check instanceof LogFilter filter)
+            return filter;
+
+        return new LogFilter() {
+            @Override
+            public Decision decide(CharSequence line) {
+                return check.checkLine(line) ? Decision.ACCEPT : Decision.REJECT;
+            }
+
+            @Override
+            public boolean test(LogEntry entry) {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Код ответа в диапазоне [from, to]
+     */
+    public static LogFilter status(int from, int to) {
+        return new FieldFilter(LogField.RESPONSE_CODE) {
+            @Override
+            Decision decide(CharSequence line, LineTokenizer tokens) {
+                int code = 0;
+                int start = tokens.tokenStart();
+                int end = tokens.tokenEnd();
+                if (end - start > 9)
+                    return Decision.UNKNOWN;
+                for (int i = start; i < end; i++) {
+                    char ch = line.charAt(i);
+                    if (ch < '0' || ch > '9')
+                        return Decision.UNKNOWN;
+                    code = code * 10 + (ch - '0');
+                }
+                return decision(code >= from && code <= to);
+            }
+
+            @Override
+            public boolean test(LogEntry entry) {
+                return entry.getResponseCode() >= from && entry.getResponseCode() <= to;
+            }
+        };
+    }
+
+    /**
+     * Метод запроса из перечисленных
+     */
+    public static LogFilter method(HttpMethod first, HttpMethod... rest) {
+        Set<HttpMethod> methods = EnumSet.of(first, rest);
+        return entry -> entry.getMethod() != null && methods.contains(entry.getMethod());
+    }
+
+    /**
+     * Путь запроса начинается с заданной строки
+     */
+    public static LogFilter pathPrefix(String prefix) {
+        Objects.requireNonNull(prefix);
+        return entry -> entry.getPath() != null && entry.getPath().startsWith(prefix);
+    }
+
+    /**
+     * Ip адрес начинается с заданной строки, например "192.168."
+     */
+    public static LogFilter ipPrefix(String prefix) {
+        Objects.requireNonNull(prefix);
+        return new FieldFilter(LogField.IP_ADDR) {
+            @Override
+            Decision decide(CharSequence line, LineTokenizer tokens) {
+                return decision(tokens.tokenEnd() - tokens.tokenStart() >= prefix.length()
+                        && LineTokenizer.regionMatches(line, tokens.tokenStart(), prefix, 0, prefix.length()));
+            }
+
+            @Override
+            public boolean test(LogEntry entry) {
+                return entry.getIpAddr().startsWith(prefix);
+            }
+        };
+    }
+
+    /**
+     * Ip адрес версии 4 входит в подсеть, заданную в нотации CIDR, например "10.0.0.0/8".
+     * Адреса других форматов в подсеть не входят
+     * @throws IllegalArgumentException - если подсеть записана неверно
+     */
+    public static LogFilter cidr(String cidr) {
+        int slash = cidr.indexOf('/');
+        long network = (slash < 0) ? -1 : parseIpv4(cidr, 0, slash);
+        int bits = -1;
+        if (slash >= 0 && slash + 1 < cidr.length() && cidr.length() - slash <= 3
+                && cidr.chars().skip(slash + 1).allMatch(ch -> ch >= '0' && ch <= '9'))
+            bits = Integer.parseInt(cidr, slash + 1, cidr.length(), 10);
+        if (network < 0 || bits < 0 || bits > 32)
+            throw new IllegalArgumentException("Неверная подсеть: " + cidr);
+
+        long mask = (bits == 0) ? 0 : (0xFFFFFFFFL << (32 - bits)) & 0xFFFFFFFFL;
+        long prefix = network & mask;
+        return new FieldFilter(LogField.IP_ADDR) {
+            @Override
+            Decision decide(CharSequence line, LineTokenizer tokens) {
+                return decision(matches(parseIpv4(line, tokens.tokenStart(), tokens.tokenEnd())));
+            }
+
+            @Override
+            public boolean test(LogEntry entry) {
+                return matches(parseIpv4(entry.getIpAddr(), 0, entry.getIpAddr().length()));
+            }
+
+            private boolean matches(long address) {
+                return address >= 0 && (address & mask) == prefix;
+            }
+        };
+    }
+
+    /**
+     * Время запроса в полуинтервале [from, to) секунд от 1970-01-01T00:00:00Z
+     */
+    public static LogFilter timeRange(long from, long to) {
+        TimestampDecoder timestamps = new TimestampDecoder();
+        return new FieldFilter(LogField.TIME) {
+            @Override
+            Decision decide(CharSequence line, LineTokenizer tokens) {
+                if (tokens.kind() != '[')
+                    return Decision.UNKNOWN;
+                LogTime time = timestamps.decode(line, tokens.start(), tokens.end());
+                return (time == null) ? Decision.UNKNOWN : decision(inRange(time.getEpochSecond()));
+            }
+
+            @Override
+            public boolean test(LogEntry entry) {
+                return inRange(entry.getTimestamp());
+            }
+
+            private boolean inRange(long timestamp) {
+                return timestamp >= from && timestamp < to;
+            }
+        };
+    }
+
+    /**
+     * Объединяет фильтры по "и"; проверка прекращается на первом отбросившем строку фильтре
+     */
+    public static LogFilter allOf(LogFilter... filters) {
+        return Arrays.stream(filters).reduce(LogFilter::and).orElseGet(LogFilters::all);
+    }
+
+    /**
+     * Разбирает ip адрес версии 4 из части строки
+     * @return - адрес как беззнаковое 32-битное число или -1, если это не адрес версии 4
+     */
+    private static long parseIpv4(CharSequence text, int start, int end) {
+        long address = 0;
+        int octets = 0;
+        int i = start;
+        while (octets < 4) {
+            int value = 0;
+            int digits = 0;
+            while (i < end && digits < 4 && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                value = value * 10 + (text.charAt(i++) - '0');
+                digits++;
+            }
+            if (digits == 0 || digits > 3 || value > 255)
+                return -1;
+            address = (address << 8) | value;
+            octets++;
+            if (octets < 4) {
+                if (i == end || text.charAt(i) != '.')
+                    return -1;
+                i++;
+            }
+        }
+        return (i == end) ? address : -1;
+    }
+
+    private static LogFilter.Decision decision(boolean accept) {
+        return accept ? LogFilter.Decision.ACCEPT : LogFilter.Decision.REJECT;
+    }
+
+    /**
+     * Фильтр по одному полю: по сырой строке выделяется только это поле.
+     * Если поле в строке не найдено, решение откладывается, а строка скорее всего не разберётся
+     */
+    private abstract static class FieldFilter implements LogFilter {
+        private final LogField field;
+
+        FieldFilter(LogField field) {
+            this.field = field;
+        }
+
+        @Override
+        public Decision decide(CharSequence line) {
+            LineTokenizer tokens = new LineTokenizer(line);
+            return tokens.advanceTo(field) ? decide(line, tokens) : Decision.UNKNOWN;
+        }
+
+        abstract Decision decide(CharSequence line, LineTokenizer tokens);
+    }
+}
@@ -0,0 +1,150 @@
+package ru.accesslogparser;
+
+import java.util.Arrays;
+
+/**
+ * Гистограмма неотрицательных целых значений с логарифмически-линейными интервалами (как в HdrHistogram).
+ * Значения меньше 2^precision учитываются точно, а каждый следующий диапазон [2^k, 2^(k+1)) делится на 2^precision
+ * равных интервалов, поэтому перцентиль завышается не более чем в (1 + 2^-precision) раз.
+ * Занимает не больше (32 - precision) * 2^precision счётчиков независимо от количества значений: массив счётчиков
+ * растёт вдвое только до наибольшего учтённого интервала, поэтому гистограмма небольших значений остаётся маленькой.
+ * Запись значения не создаёт объектов, кроме редкого увеличения массива при значении большего порядка.
+ * Две гистограммы с одинаковой точностью объединяются без потери точности. Не потокобезопасна
+ */
+class LogLinearHistogram {
+    static final int MIN_PRECISION = 1;
+    static final int MAX_PRECISION = 10;
+
+    private final int precision;
+    /**
+     * Наибольший размер массива счётчиков, покрывающий все значения int
+     */
+    private final int maxLength;
+    private long[] counts;
+    private long totalCount;
+    private int maxValue;
+    /**
+     * Наименьший и наибольший непустые интервалы: очистка и поиск перцентиля проходят только между ними
+     */
+    private int lowest;
+    private int highest;
+
+    /**
+     * @param precision - количество бит, делящих каждую степень двойки на интервалы (от 1 до 10)
+     */
+    LogLinearHistogram(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("Точность должна быть от " + MIN_PRECISION + " до " + MAX_PRECISION + ": " + precision);
+
+        this.precision = precision;
+        this.maxLength = (Integer.SIZE - precision) << precision;
+        // Сразу покрываются значения меньше 2^(precision + 1)
+        this.counts = new long[2 << precision];
+        clear();
+    }
+
+    /**
+     * Учитывает значение; отрицательные значения учитываются как 0
+     */
+    void record(int value) {
+        if (value < 0)
+            value = 0;
+
+        int index = index(value);
+        if (index >= counts.length)
+            grow(index);
+        counts[index]++;
+        totalCount++;
+        if (maxValue < value)
+            maxValue = value;
+        if (lowest > index)
+            lowest = index;
+        if (highest < index)
+            highest = index;
+    }
+
+    /**
+     * Значение, которое не превышают percentile процентов учтённых значений: верхняя граница его интервала,
+     * но не больше наибольшего учтённого значения
+     * @param percentile - от 0 до 100, например 99.9
+     * @return - 0, если значений нет
+     */
+    long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("Перцентиль должен быть от 0 до 100: " + percentile);
+        if (totalCount == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = lowest; i <= highest; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(upperValue(i), maxValue);
+        }
+        return maxValue;
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Объединяет с другой гистограммой той же точности: результат соответствует записи значений обеих гистограмм
+     * @return - текущая гистограмма
+     */
+    LogLinearHistogram merge(LogLinearHistogram other) {
+        if (other.precision != precision)
+            throw new IllegalArgumentException("Нельзя объединить гистограммы с точностью " + precision + " и " + other.precision);
+
+        if (other.highest >= counts.length)
+            grow(other.highest);
+        for (int i = other.lowest; i <= other.highest; i++)
+            counts[i] += other.counts[i];
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+        lowest = Math.min(lowest, other.lowest);
+        highest = Math.max(highest, other.highest);
+        return this;
+    }
+
+    void clear() {
+        if (lowest <= highest)
+            Arrays.fill(counts, lowest, highest + 1, 0);
+        totalCount = 0;
+        maxValue = 0;
+        lowest = Integer.MAX_VALUE;
+        highest = -1;
+    }
+
+    private void grow(int index) {
+        counts = Arrays.copyOf(counts, Math.min(maxLength, Math.max(index + 1, counts.length * 2)));
+    }
+
+    private int index(int value) {
+        int subBuckets = 1 << precision;
+        if (value < subBuckets)
+            return value;
+
+        // Номер степени двойки определяет группу интервалов, следующие precision бит - интервал в группе
+        int shift = (Integer.SIZE - 1 - Integer.numberOfLeadingZeros(value)) - precision;
+        return ((shift + 1) << precision) + (value >>> shift) - subBuckets;
+    }
+
+    /**
+     * Наибольшее значение, попадающее в интервал
+     */
+    private long upperValue(int index) {
+        int subBuckets = 1 << precision;
+        if (index < subBuckets)
+            return index;
+
+        int shift = (index >>> precision) - 1;
+        long bucket = (index & (subBuckets - 1)) + subBuckets;
+        return ((bucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.accesslogparser;
+
+/**
+ * Движок разбора строки лог-файла в {@link LogEntry}
+ */
+public interface LogParser {
+    /**
+     * Разбирает строку лог-файла
+     * @param row - строка лога
+     * @return - разобранная запись
+     * @throws LogEntryCreateException - если строку не удалось разобрать
+     */
+    LogEntry parse(String row) throws LogEntryCreateException;
+}
@@ -0,0 +1,307 @@
+package ru.accesslogparser;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Двоичный снимок разобранного лог-файла, чтобы не разбирать неизменившийся файл заново.
+ * Формат: заголовок (сигнатура, версия, размер и время изменения исходного файла, количество записей),
+ * словарь строковых полей, затем столбцы {@link LogColumns} целиком, один за другим.
+ * Снимок считается устаревшим, если размер или время изменения исходного файла не совпадают с заголовком,
+ * а также если он обрезан или повреждён: размеры в нём проверяются по размеру файла до выделения памяти.
+ * При загрузке файл отображается в память окнами и столбцы копируются в массивы целиком
+ */
+class LogSnapshot {
+    /**
+     * Расширение, добавляемое к имени лог-файла для файла снимка
+     */
+    static final String EXTENSION = ".idx";
+    private static final int MAGIC = 0x414C5053;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    /**
+     * Наибольший размер отображаемого в память окна
+     */
+    private static final int WINDOW_SIZE = 1 << 28;
+
+    private LogSnapshot() {
+    }
+
+    /**
+     * Записывает снимок. Файл сначала пишется во временный в том же каталоге и затем атомарно переименовывается,
+     * поэтому прерванная запись не оставляет испорченного снимка, а одновременные записи не мешают друг другу
+     * @param columns - разобранные записи
+     * @param sourceSize - размер исходного файла на момент начала разбора
+     * @param sourceModified - время изменения исходного файла на момент начала разбора
+     * @param target - путь к файлу снимка
+     */
+    static void write(LogColumns columns, long sourceSize, long sourceModified, Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+
+        try {
+            write(columns, sourceSize, sourceModified, temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void write(LogColumns columns, long sourceSize, long sourceModified, Path temp, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceSize);
+            out.writeLong(sourceModified);
+            out.writeInt(columns.size());
+
+            FieldDictionary dictionary = columns.getDictionary();
+            int words = dictionary.size();
+            out.writeInt(words);
+            for (int id = 0; id < words; id++)
+                out.writeString(dictionary.valueOf(id));
+
+            columns.write(out);
+            out.flush();
+            channel.force(false);
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загружает снимок, если он соответствует исходному файлу
+     * @param source - исходный лог-файл
+     * @param target - путь к файлу снимка
+     * @return - записи из снимка или null, если снимка нет, он устарел или повреждён
+     */
+    static LogColumns read(File source, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            if (channel.size() < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+            if (in.readLong() != source.length() || in.readLong() != source.lastModified())
+                return null;
+
+            int rows = in.readInt();
+            int words = in.readInt();
+            // Каждое слово занимает хотя бы длину, столбцы - ровно LogColumns.ROW_BYTES на запись
+            if (rows < 0 || words < 0 || (long) words * Integer.BYTES + (long) rows * LogColumns.ROW_BYTES > in.remaining())
+                return null;
+
+            FieldDictionary dictionary = new ConcurrentFieldDictionary();
+            for (int id = 0; id < words; id++)
+                dictionary.idOf(in.readString());
+            if (dictionary.size() != words || (long) rows * LogColumns.ROW_BYTES != in.remaining())
+                return null;
+
+            LogColumns columns = new LogColumns(dictionary);
+            columns.read(in, rows);
+            return columns;
+        } catch (NoSuchFileException | EOFException | StreamCorruptedException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Буферизованная запись примитивов и массивов в канал (порядок байт - big-endian)
+     */
+    static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeInt(int value) throws IOException {
+            require(Integer.BYTES).putInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            require(Long.BYTES).putLong(value);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            writeBytes(bytes, bytes.length);
+        }
+
+        void writeLongs(long[] values, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                int count = Math.min(length - done, require(Long.BYTES).remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(values, done, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                done += count;
+            }
+        }
+
+        void writeInts(int[] values, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                int count = Math.min(length - done, require(Integer.BYTES).remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, done, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                done += count;
+            }
+        }
+
+        void writeShorts(short[] values, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                int count = Math.min(length - done, require(Short.BYTES).remaining() / Short.BYTES);
+                buffer.asShortBuffer().put(values, done, count);
+                buffer.position(buffer.position() + count * Short.BYTES);
+                done += count;
+            }
+        }
+
+        void writeBytes(byte[] values, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                int count = Math.min(length - done, require(1).remaining());
+                buffer.put(values, done, count);
+                done += count;
+            }
+        }
+
+        void writeBooleans(boolean[] values, int length) throws IOException {
+            for (int i = 0; i < length; i++)
+                require(1).put(values[i] ? (byte) 1 : 0);
+        }
+
+        /**
+         * Освобождает в буфере место хотя бы под bytes байт
+         */
+        private ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+            return buffer;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Последовательное чтение из канала через отображаемые в память окна
+     */
+    static class Input {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+
+        private Input(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        int readInt() throws IOException {
+            int value = require(Integer.BYTES).getInt();
+            position += Integer.BYTES;
+            return value;
+        }
+
+        long readLong() throws IOException {
+            long value = require(Long.BYTES).getLong();
+            position += Long.BYTES;
+            return value;
+        }
+
+        String readString() throws IOException {
+            int length = readInt();
+            if (length < 0 || length > remaining())
+                throw new StreamCorruptedException("Неверная длина строки в снимке лога: " + length);
+            byte[] bytes = new byte[length];
+            readBytes(bytes, length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Количество непрочитанных байт
+         */
+        long remaining() {
+            return size - position;
+        }
+
+        void readLongs(long[] values, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                ByteBuffer buffer = require(Long.BYTES);
+                int count = Math.min(length - done, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().get(values, done, count);
+                position += (long) count * Long.BYTES;
+                done += count;
+            }
+        }
+
+        void readInts(int[] values, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                ByteBuffer buffer = require(Integer.BYTES);
+                int count = Math.min(length - done, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, done, count);
+                position += (long) count * Integer.BYTES;
+                done += count;
+            }
+        }
+
+        void readShorts(short[] values, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                ByteBuffer buffer = require(Short.BYTES);
+                int count = Math.min(length - done, buffer.remaining() / Short.BYTES);
+                buffer.asShortBuffer().get(values, done, count);
+                position += (long) count * Short.BYTES;
+                done += count;
+            }
+        }
+
+        void readBytes(byte[] values, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                ByteBuffer buffer = require(1);
+                int count = Math.min(length - done, buffer.remaining());
+                buffer.get(values, done, count);
+                position += count;
+                done += count;
+            }
+        }
+
+        void readBooleans(boolean[] values, int length) throws IOException {
+            byte[] bytes = new byte[Math.min(length, 1 << 16)];
+            for (int done = 0; done < length; ) {
+                int count = Math.min(length - done, bytes.length);
+                readBytes(bytes, count);
+                for (int i = 0; i < count; i++)
+                    values[done + i] = bytes[i] != 0;
+                done += count;
+            }
+        }
+
+        /**
+         * Возвращает буфер, установленный на текущую позицию, в котором доступно хотя бы bytes байт.
+         * При необходимости отображает новое окно, начиная с текущей позиции
+         */
+        private ByteBuffer require(int bytes) throws IOException {
+            if (window == null || position < windowStart || position + bytes > windowStart + window.limit()) {
+                if (position + bytes > size)
+                    throw new EOFException("Снимок лога обрезан");
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+            }
+            return window.duplicate().position((int) (position - windowStart));
+        }
+    }
+}
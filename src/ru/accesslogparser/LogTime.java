@@ -0,0 +1,52 @@
+package ru.accesslogparser;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Время запроса из лога: момент в секундах от эпохи и смещение часового пояса, с которым он записан
+ */
+final class LogTime {
+    private final long epochSecond;
+    private final int offsetSeconds;
+    private final LocalDateTime localTime;
+
+    LogTime(LocalDateTime localTime, ZoneOffset offset) {
+        this.localTime = localTime;
+        this.offsetSeconds = offset.getTotalSeconds();
+        this.epochSecond = localTime.toEpochSecond(offset);
+    }
+
+    /**
+     * Секунды от 1970-01-01T00:00:00Z с учётом часового пояса
+     */
+    long getEpochSecond() {
+        return epochSecond;
+    }
+
+    /**
+     * Смещение часового пояса в секундах
+     */
+    int getOffsetSeconds() {
+        return offsetSeconds;
+    }
+
+    /**
+     * Время, как оно записано в логе (без часового пояса)
+     */
+    LocalDateTime getLocalTime() {
+        return localTime;
+    }
+
+    /**
+     * Переводит момент времени в локальное время с указанным смещением
+     */
+    static LocalDateTime toLocalTime(long epochSecond, int offsetSeconds) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+
+    @Override
+    public String toString() {
+        return localTime + ZoneOffset.ofTotalSeconds(offsetSeconds).toString();
+    }
+}
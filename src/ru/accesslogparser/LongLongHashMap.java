@@ -0,0 +1,110 @@
+package ru.accesslogparser;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица long -> long с открытой адресацией, без упаковки ключей и значений.
+ * Не потокобезопасна
+ */
+class LongLongHashMap {
+    /**
+     * Обработчик пары ключ-значение
+     */
+    interface LongLongConsumer {
+        void accept(long key, long value);
+    }
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    /**
+     * Размер, при превышении которого таблица увеличивается (заполнение не более половины)
+     */
+    private int threshold;
+
+    LongLongHashMap() {
+        allocate(16);
+    }
+
+    /**
+     * Прибавляет delta к значению ключа (отсутствующий ключ считается равным 0)
+     * @return - новое значение
+     */
+    long addTo(long key, long delta) {
+        int i = indexOf(key);
+        while (used[i]) {
+            if (keys[i] == key)
+                return values[i] += delta;
+            i = (i + 1) & mask;
+        }
+
+        used[i] = true;
+        keys[i] = key;
+        values[i] = delta;
+        if (++size > threshold)
+            rehash(keys.length * 2);
+        return delta;
+    }
+
+    /**
+     * Возвращает значение ключа или 0, если ключ отсутствует
+     */
+    long get(long key) {
+        int i = indexOf(key);
+        while (used[i]) {
+            if (keys[i] == key)
+                return values[i];
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    void forEach(LongLongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i])
+                action.accept(keys[i], values[i]);
+        }
+    }
+
+    private int indexOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        threshold = capacity / 2;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (!oldUsed[j])
+                continue;
+            int i = indexOf(oldKeys[j]);
+            while (used[i])
+                i = (i + 1) & mask;
+            used[i] = true;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
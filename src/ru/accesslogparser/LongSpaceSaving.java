@@ -0,0 +1,251 @@
+package ru.accesslogparser;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * {@link SpaceSaving} для ключей long (например, секунд от эпохи): ключи, счётчики и погрешности хранятся
+ * в массивах по номеру ячейки, поэтому увеличение счётчика не упаковывает ключ в Long и не создаёт объектов.
+ * Гарантии и объединение такие же, как у {@link SpaceSaving}.
+ * Не потокобезопасен
+ */
+class LongSpaceSaving {
+    /**
+     * Обработчик отслеживаемого ключа
+     */
+    interface CounterConsumer {
+        /**
+         * @param count - оценка частоты сверху
+         * @param error - наибольшая погрешность оценки
+         */
+        void accept(long key, long count, long error);
+    }
+
+    private final int capacity;
+    /**
+     * Ключ, счётчик и погрешность по номеру ячейки; заняты ячейки от 0 до size - 1
+     */
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    /**
+     * Хеш-таблица ключ -> номер ячейки + 1 (0 - пусто) с открытой адресацией, заполненная не более чем наполовину
+     */
+    private final int[] table;
+    private final int mask;
+    /**
+     * Двоичная куча ячеек по возрастанию счётчика и позиция каждой ячейки в ней
+     */
+    private final int[] heap;
+    private final int[] positions;
+    private int size;
+
+    /**
+     * @param capacity - наибольшее количество отслеживаемых ключей
+     */
+    LongSpaceSaving(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Количество ключей должно быть больше нуля: " + capacity);
+
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        this.mask = table.length - 1;
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+    }
+
+    /**
+     * Увеличивает счётчик ключа
+     * @param increment - величина увеличения (не меньше нуля)
+     */
+    void add(long key, long increment) {
+        int slot = find(key);
+        if (slot >= 0) {
+            counts[slot] += increment;
+        } else if (size < capacity) {
+            slot = size;
+            set(slot, key, increment, 0);
+            place(slot, size++);
+            insert(slot);
+            siftUp(positions[slot]);
+            return;
+        } else {
+            // Вытесняем ключ с наименьшим счётчиком, его значение становится погрешностью нового ключа
+            slot = heap[0];
+            remove(slot);
+            set(slot, key, counts[slot] + increment, counts[slot]);
+            insert(slot);
+        }
+        siftDown(positions[slot]);
+    }
+
+    /**
+     * Объединяет с другим экземпляром так же, как {@link SpaceSaving#merge(SpaceSaving)}
+     * @return - текущий экземпляр
+     */
+    LongSpaceSaving merge(LongSpaceSaving other) {
+        long thisMin = (size == capacity) ? counts[heap[0]] : 0;
+        long otherMin = (other.size == other.capacity) ? other.counts[other.heap[0]] : 0;
+
+        int total = 0;
+        long[] allKeys = new long[size + other.size];
+        long[] allCounts = new long[allKeys.length];
+        long[] allErrors = new long[allKeys.length];
+        for (int i = 0; i < size; i++) {
+            int slot = heap[i];
+            int same = other.find(keys[slot]);
+            allKeys[total] = keys[slot];
+            allCounts[total] = counts[slot] + ((same >= 0) ? other.counts[same] : otherMin);
+            allErrors[total++] = errors[slot] + ((same >= 0) ? other.errors[same] : otherMin);
+        }
+        for (int i = 0; i < other.size; i++) {
+            int slot = other.heap[i];
+            if (find(other.keys[slot]) >= 0)
+                continue;
+            allKeys[total] = other.keys[slot];
+            allCounts[total] = other.counts[slot] + thisMin;
+            allErrors[total++] = other.errors[slot] + thisMin;
+        }
+
+        // Остаются capacity ключей с наибольшими счётчиками; при равенстве - в том же порядке, что у SpaceSaving
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> allCounts[i]).reversed());
+
+        clear();
+        for (int i = 0; i < total && i < capacity; i++) {
+            int index = order[i];
+            set(size, allKeys[index], allCounts[index], allErrors[index]);
+            place(size, size);
+            insert(size++);
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--)
+            siftDown(i);
+        return this;
+    }
+
+    /**
+     * Передаёт обработчику ключи с наибольшим счётчиком
+     * @param guaranteed - сравнивать и передавать гарантированную частоту (count - error) вместо оценки сверху,
+     *                   см. {@link SpaceSaving#peaks(boolean)}
+     */
+    void peaks(boolean guaranteed, LongLongHashMap.LongLongConsumer action) {
+        long max = 0;
+        for (int slot = 0; slot < size; slot++)
+            max = Math.max(max, value(slot, guaranteed));
+
+        for (int slot = 0; slot < size; slot++) {
+            if (value(slot, guaranteed) == max)
+                action.accept(keys[slot], max);
+        }
+    }
+
+    /**
+     * Передаёт обработчику все отслеживаемые ключи в произвольном порядке
+     */
+    void forEach(CounterConsumer action) {
+        for (int slot = 0; slot < size; slot++)
+            action.accept(keys[slot], counts[slot], errors[slot]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    private long value(int slot, boolean guaranteed) {
+        return guaranteed ? counts[slot] - errors[slot] : counts[slot];
+    }
+
+    private void set(int slot, long key, long count, long error) {
+        keys[slot] = key;
+        counts[slot] = count;
+        errors[slot] = error;
+    }
+
+    /**
+     * @return - номер ячейки ключа или -1, если ключ не отслеживается
+     */
+    private int find(long key) {
+        for (int i = indexOf(key); ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == 0 || keys[entry - 1] == key)
+                return entry - 1;
+        }
+    }
+
+    private void insert(int slot) {
+        int i = indexOf(keys[slot]);
+        while (table[i] != 0)
+            i = (i + 1) & mask;
+        table[i] = slot + 1;
+    }
+
+    /**
+     * Удаляет ячейку из таблицы, сдвигая на освободившееся место следующие элементы цепочки,
+     * как {@link SpaceSaving}
+     */
+    private void remove(int slot) {
+        int hole = indexOf(keys[slot]);
+        while (table[hole] != slot + 1)
+            hole = (hole + 1) & mask;
+
+        for (int i = (hole + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = indexOf(keys[table[i] - 1]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private int indexOf(long key) {
+        int hash = Long.hashCode(key) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void siftUp(int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot])
+                break;
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(slot, i);
+    }
+
+    private void siftDown(int i) {
+        int slot = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]])
+                child++;
+            if (counts[slot] <= counts[heap[child]])
+                break;
+            place(heap[child], i);
+            i = child;
+        }
+        place(slot, i);
+    }
+
+    private void place(int slot, int i) {
+        heap[i] = slot;
+        positions[slot] = i;
+    }
+}
@@ -2,50 +2,268 @@ package ru.accesslogparser;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class Main {
+    /**
+     * Количество строк в топ-отчётах
+     */
+    private static final int TOP_LIMIT = 10;
+    /**
+     * Перцентили размера ответа в отчёте
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
         File file;
         String path;
+        List<Path> batchFiles = null;
 
         while(true) {
-            System.out.println("Укажите путь к файлу:");
+            System.out.println("Укажите путь к файлу, каталогу или маску файлов (например, logs/access.log*):");
             path = scanner.nextLine();
             if (path.equalsIgnoreCase("exit"))
                 return;
 
             file = new File(path);
 
-            if (!file.exists() || file.isDirectory()) {
-                System.out.println("Путь к файлу указан неверно: " + (file.exists() ? " каталог вместо файла" : " файл не существует"));
+            if (file.isDirectory() || path.contains("*") || path.contains("?")) {
+                try {
+                    batchFiles = LogBatch.resolve(path);
+                }
+                catch (IOException | InvalidPathException ex) {
+                    System.out.println("Путь указан неверно: " + ex);
+                    continue;
+                }
+                if (!batchFiles.isEmpty())
+                    break;
+                System.out.println("По указанному пути нет файлов");
+            }
+            else if (!file.exists()) {
+                System.out.println("Путь к файлу указан неверно: файл не существует");
             }
             else {
                 break;
             }
         }
 
-        LogFile logFile = new LogFile(file, new MaxLengthCheck(1024));
+        // Приближённый режим: память под статистику не растёт с количеством различных ip, страниц и доменов
+        boolean approximate = Arrays.asList(args).contains("--approximate");
+
+        // Счётчики разбора доступны через JMX и периодически выводятся в консоль
+        boolean metrics = Arrays.asList(args).contains("--metrics");
+        ScheduledExecutorService metricsPrinter = metrics ? startMetricsDump() : null;
+
+        BadLineReporter badLines;
+        try {
+            badLines = createBadLineReporter(args);
+        }
+        catch (IOException | IllegalArgumentException ex) {
+            System.out.println("Неверный параметр --bad-lines: " + ex);
+            return;
+        }
 
+        LogFilter filter;
         try {
-            logFile.read();
+            filter = createFilter(args);
+        }
+        catch (IllegalArgumentException | DateTimeParseException ex) {
+            System.out.println("Неверный параметр фильтра: " + ex.getMessage());
+            return;
+        }
+
+        try {
+            run(file, batchFiles, filter, approximate, Arrays.asList(args).contains("--follow"), Arrays.asList(args).contains("--index"),
+                    Arrays.asList(args).contains("--traffic"), badLines);
+        }
+        finally {
+            if (metrics) {
+                metricsPrinter.shutdownNow();
+                System.out.println(IngestMetrics.getDefault());
+            }
+            try {
+                badLines.close();
+            }
+            catch (IOException ex) {
+                System.out.println("Ошибка записи отклонённых строк: " + ex);
+            }
+            System.out.println(badLines);
+        }
+    }
+
+    /**
+     * Создаёт учёт отклонённых строк по параметру --bad-lines=skip|count|sample (по умолчанию count).
+     * При sample часть строк с причиной ошибки (не больше 100 в секунду) записывается в файл bad-lines.txt
+     */
+    private static BadLineReporter createBadLineReporter(String[] args) throws IOException {
+        BadLinePolicy policy = BadLinePolicy.COUNT;
+        for (String arg : args) {
+            if (arg.startsWith("--bad-lines="))
+                policy = BadLinePolicy.valueOf(arg.substring("--bad-lines=".length()).toUpperCase(Locale.ROOT));
+        }
+        return (policy == BadLinePolicy.SAMPLE) ? new BadLineReporter(Path.of("bad-lines.txt"), 100) : new BadLineReporter(policy);
+    }
+
+    /**
+     * Создаёт фильтр строк по параметрам --status=, --method=, --ip=, --path=, --from= и --to=.
+     * Значения перечисляются через запятую; код ответа можно задать диапазоном (400-499),
+     * ip адрес - началом адреса или подсетью (10.0.0.0/8), время - в формате 2022-09-25T06:00:00+03:00.
+     * Значение, начинающееся с '!', исключает подходящие строки.
+     * @return - фильтр или null, если параметров фильтра нет
+     */
+    private static LogFilter createFilter(String[] args) {
+        List<LogFilter> filters = new ArrayList<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0)
+                continue;
+
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            boolean exclude = value.startsWith("!");
+            if (exclude)
+                value = value.substring(1);
+
+            LogFilter filter = switch (name) {
+                case "status" -> anyOf(value, code -> {
+                    int dash = code.indexOf('-', 1);
+                    return (dash < 0) ? LogFilters.status(Integer.parseInt(code), Integer.parseInt(code))
+                            : LogFilters.status(Integer.parseInt(code.substring(0, dash)), Integer.parseInt(code.substring(dash + 1)));
+                });
+                case "method" -> anyOf(value, method -> LogFilters.method(HttpMethod.valueOf(method.toUpperCase(Locale.ROOT))));
+                case "ip" -> anyOf(value, ip -> ip.contains("/") ? LogFilters.cidr(ip) : LogFilters.ipPrefix(ip));
+                case "path" -> anyOf(value, LogFilters::pathPrefix);
+                case "from" -> LogFilters.timeRange(OffsetDateTime.parse(value).toEpochSecond(), Long.MAX_VALUE);
+                case "to" -> LogFilters.timeRange(Long.MIN_VALUE, OffsetDateTime.parse(value).toEpochSecond());
+                default -> null;
+            };
+            if (filter != null)
+                filters.add(exclude ? filter.negate() : filter);
+        }
+
+        if (filters.isEmpty())
+            return null;
+        return LogFilters.allOf(filters.toArray(new LogFilter[0]));
+    }
+
+    /**
+     * Объединяет по "или" фильтры для значений, перечисленных через запятую
+     */
+    private static LogFilter anyOf(String values, Function<String, LogFilter> factory) {
+        return Arrays.stream(values.split(",")).map(factory).reduce(LogFilter::or).orElseThrow();
+    }
+
+    /**
+     * Разбирает файл или набор файлов и выводит отчёт, либо следит за файлом
+     * @param batchFiles - файлы пакетного режима или null, если указан один файл
+     * @param filter - фильтр строк или null, если учитываются все строки
+     * @param index - использовать двоичный снимок разобранного файла (без фильтра)
+     * @param traffic - вывести только отчёт по трафику; строки разбираются лениво ({@link LazyLogEntry})
+     */
+    private static void run(File file, List<Path> batchFiles, LogFilter filter, boolean approximate, boolean follow, boolean index,
+                            boolean traffic, BadLineReporter badLines) {
+        // Длина проверяется до фильтра: слишком длинные строки учитываются как ошибочные, а не как отброшенные фильтром
+        Checkable check = new MaxLengthCheck(1024);
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        if (batchFiles != null) {
+            // Пакетный режим: каждый файл (в том числе .gz) разбирается целиком одним потоком в свою статистику
+            LogBatch batch = new LogBatch(batchFiles, check, filter, badLines, traffic);
+            try {
+                if (traffic)
+                    printTrafficReport(batch.read(threads, threads * 2, TrafficStatistics::new, TrafficStatistics::merge));
+                else
+                    printReport(batch.read(threads, threads * 2, () -> createStatistics(approximate), Statistics::merge), approximate);
+            }
+            catch (IOException ex) {
+                System.out.println(ex);
+            }
+            return;
+        }
+
+        if (traffic && !follow) {
+            // Отчёту нужны только время, код и размер ответа: остальные поля и UserAgent не разбираются
+            LogFile logFile = new LogFile(file, check, filter, new CombinedLogParser(new UserAgentCache(4096), null, true),
+                    IngestMetrics.getDefault(), badLines);
+            try {
+                printTrafficReport(logFile.readMapped(threads, TrafficStatistics::new, TrafficStatistics::merge));
+            }
+            catch (IOException ex) {
+                System.out.println(ex);
+            }
+            return;
+        }
+
+        LogFile logFile = new LogFile(file, check, filter, new CombinedLogParser(), IngestMetrics.getDefault(), badLines);
+
+        if (follow) {
+            follow(logFile, approximate, badLines);
+            return;
+        }
+
+        Statistics stat = createStatistics(approximate);
+
+        try {
+            if (index && filter == null) {
+                // Разобранные записи сохраняются рядом с лог-файлом, повторный запуск по неизменившемуся файлу читает снимок.
+                // Снимок держит в памяти все записи файла, поэтому используется только по запросу.
+                // Выборка по фильтру всегда разбирает файл заново
+                LogColumns columns = logFile.readIndexed(threads, Path.of(file.getPath() + LogSnapshot.EXTENSION));
+                stat.addColumns(columns);
+            }
+            else {
+                // Записи сразу учитываются в статистике своего потока, память не растёт с размером файла
+                stat = logFile.readMapped(threads, () -> createStatistics(approximate), Statistics::merge);
+            }
         }
         catch (IOException ex) {
             System.out.println(ex);
             return;
         }
 
-        //long startTime = System.currentTimeMillis();
-        System.out.println("Всего разобранных записей из лог-файла: " + logFile.getEntries().size());
+        printReport(stat, approximate);
+    }
 
-        // Подсчёт статистики
-        Statistics stat = new Statistics();
-        for(LogEntry entry: logFile.getEntries()) {
-            stat.addEntry(entry);
-        }
+    /**
+     * Регистрирует счётчики разбора в JMX и раз в 10 секунд выводит их в консоль
+     * @return - поток вывода, который нужно остановить по окончании работы
+     */
+    private static ScheduledExecutorService startMetricsDump() {
+        IngestMetrics metrics = IngestMetrics.getDefault();
+        metrics.registerMBean();
+        metrics.reset();
+
+        ScheduledExecutorService printer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-printer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        printer.scheduleAtFixedRate(() -> System.out.println(metrics), 10, 10, TimeUnit.SECONDS);
+        return printer;
+    }
+
+    /**
+     * Выводит отчёт по подсчитанной статистике
+     */
+    private static void printReport(Statistics stat, boolean approximate) {
+        System.out.println("Всего разобранных записей из лог-файла: " + stat.getTotalRequests());
 
         System.out.println(stat);
         System.out.println("Доля траффика в минуту = " + String.format("%,.3f", stat.getTrafficRate(Statistics.TimeIntervals.MINUTE)));
@@ -53,12 +271,18 @@ public class Main {
         System.out.println("Доля траффика в день = " + String.format("%,.3f", stat.getTrafficRate(Statistics.TimeIntervals.DAY)));
 
         System.out.println("==================================================================");
-        System.out.println("Существующие страницы:");
-        System.out.println(stat.getExistingPages());
+        if (approximate) {
+            System.out.println("Количество существующих страниц ≈ " + stat.getExistingPagesCount());
+            System.out.println("Количество несуществующих страниц ≈ " + stat.getNonExistingPagesCount());
+        }
+        else {
+            System.out.println("Существующие страницы:");
+            System.out.println(stat.getExistingPages());
 
-        System.out.println("==================================================================");
-        System.out.println("Несуществующие страницы:");
-        System.out.println(stat.getNonExistingPages());
+            System.out.println("==================================================================");
+            System.out.println("Несуществующие страницы:");
+            System.out.println(stat.getNonExistingPages());
+        }
 
         System.out.println("==================================================================");
         System.out.println("Статистика используемых ОС:");
@@ -85,12 +309,118 @@ public class Main {
             System.out.println(entry.getKey() + " - " + entry.getValue());
 
         System.out.println("==================================================================");
-        System.out.println("Список доменных имён:");
-        System.out.println(stat.getDomains());
+        if (approximate) {
+            System.out.println("Количество доменных имён ≈ " + stat.getDomainsCount());
+        }
+        else {
+            System.out.println("Список доменных имён:");
+            System.out.println(stat.getDomains());
+        }
 
         System.out.println("==================================================================");
         System.out.println("IP адреса с наибольшим количеством запросов:");
         for(Map.Entry<String, Integer> entry: stat.getPeakUserAttendance().entrySet())
             System.out.println(entry.getKey() + " - " + entry.getValue());
+
+        printTop("Самые запрашиваемые страницы:", stat.getTopPaths(TOP_LIMIT));
+        printTop("Источники переходов на несуществующие страницы:", stat.getTopNotFoundReferers(TOP_LIMIT));
+        printTop("IP адреса с наибольшим трафиком:", stat.getTopIpsByTraffic(TOP_LIMIT));
+
+        System.out.println("==================================================================");
+        System.out.println("Размер ответа (p50 / p90 / p99 / p99.9):");
+        System.out.println("все запросы - " + formatPercentiles(stat.getResponseSizePercentiles(PERCENTILES)));
+        for (int statusClass = 2; statusClass <= 5; statusClass++)
+            System.out.println(statusClass + "xx - " + formatPercentiles(stat.getStatusResponseSizePercentiles(statusClass, PERCENTILES)));
+        for (Map.Entry<String, long[]> entry : stat.getTopPathResponseSizePercentiles(TOP_LIMIT, PERCENTILES).entrySet())
+            System.out.println(entry.getKey() + " - " + formatPercentiles(entry.getValue()));
+    }
+
+    /**
+     * Выводит отчёт по трафику
+     */
+    private static void printTrafficReport(TrafficStatistics stat) {
+        System.out.println("Всего разобранных записей из лог-файла: " + stat.getTotalRequests());
+        System.out.println("Общий трафик: " + stat.getTotalTraffic());
+        System.out.println("Доля траффика в минуту = " + String.format("%,.3f", stat.getTrafficRate(Statistics.TimeIntervals.MINUTE)));
+        System.out.println("Доля траффика в час = " + String.format("%,.3f", stat.getTrafficRate(Statistics.TimeIntervals.HOUR)));
+        System.out.println("Доля траффика в день = " + String.format("%,.3f", stat.getTrafficRate(Statistics.TimeIntervals.DAY)));
+        System.out.println("Ошибочных запросов: " + stat.getTotalErrorRequests()
+                + ", в час = " + String.format("%,.2f", stat.getErrorRequestsRate(Statistics.TimeIntervals.HOUR)));
+        System.out.println("Размер ответа (p50 / p90 / p99 / p99.9): " + formatPercentiles(stat.getResponseSizePercentiles(PERCENTILES)));
+    }
+
+    private static String formatPercentiles(long[] values) {
+        StringBuilder result = new StringBuilder();
+        for (long value : values) {
+            if (result.length() > 0)
+                result.append(" / ");
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+    private static void printTop(String title, Map<String, Long> top) {
+        System.out.println("==================================================================");
+        System.out.println(title);
+        for (Map.Entry<String, Long> entry : top.entrySet())
+            System.out.println(entry.getKey() + " - " + entry.getValue());
+    }
+
+    /**
+     * Создаёт статистику; в приближённом режиме ошибка подсчёта различных значений около 1%,
+     * отслеживается 10000 самых частых ip адресов и секунд и по 1000 ключей в каждом топ-отчёте
+     */
+    private static Statistics createStatistics(boolean approximate) {
+        return approximate ? new Statistics(0.01, 10_000) : new Statistics();
+    }
+
+    /**
+     * Режим слежения за дописываемым лог-файлом: статистика обновляется по мере появления строк
+     * и периодически выводится в консоль. Работает до остановки процесса
+     */
+    private static void follow(LogFile logFile, boolean approximate, BadLineReporter badLines) {
+        Statistics stat = createStatistics(approximate);
+        // Текущая нагрузка за последний час по секундам, отсчитывается от текущего времени; изменяется под той же блокировкой, что и stat
+        RollingWindow window = new RollingWindow(3600, 1);
+        ScheduledExecutorService printer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-printer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        printer.scheduleAtFixedRate(() -> {
+            long now = Instant.now().getEpochSecond();
+            synchronized (stat) {
+                System.out.println("Записей: " + stat.getTotalRequests()
+                        + ", отклонено строк: " + badLines.getCount()
+                        + ", трафик в час = " + String.format("%,.3f", stat.getTrafficRate())
+                        + ", ошибочных запросов в час = " + String.format("%,.2f", stat.getErrorRequestsRate()));
+                for (int minutes : new int[] {1, 5, 60}) {
+                    RollingWindow.Totals totals = window.getLast(Duration.ofMinutes(minutes), now);
+                    System.out.println("  за " + minutes + " мин: запросов = " + totals.getRequests()
+                            + ", ошибок = " + totals.getErrors()
+                            + ", трафик = " + totals.getTraffic()
+                            + ", пик в секунду = " + totals.getPeakRequests());
+                }
+            }
+        }, 10, 10, TimeUnit.SECONDS);
+
+        try {
+            logFile.follow(entry -> {
+                synchronized (stat) {
+                    stat.addEntry(entry);
+                    window.accept(entry);
+                }
+            }, 200);
+        }
+        catch (IOException ex) {
+            System.out.println(ex);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            printer.shutdownNow();
+        }
     }
-}
\ No newline at end of file
+}
@@ -7,11 +7,26 @@ public class MaxLengthCheck implements Checkable {
         this.maxLength = maxLength;
     }
 
+    /**
+     * @return - false, если длина строки превышает максимально допустимую
+     */
     @Override
     public boolean checkString(String str) {
-        if (str.length() > maxLength)
-            throw new StringIsTooLongException("Длина строки = " + str.length() + ", что превышает максимально допустимую длину = " + maxLength + " символов");
+        return str.length() <= maxLength;
+    }
 
-        return true;
+    /**
+     * Длина в байтах не меньше длины в символах, поэтому строка декодируется, только если байтов больше допустимого
+     */
+    @Override
+    public boolean checkLine(CharSequence line) {
+        return line.length() <= maxLength || checkString(line.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "MaxLengthCheck {" +
+                "maxLength=" + maxLength +
+                '}';
     }
 }
@@ -0,0 +1,105 @@
+package ru.accesslogparser;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Хеш-таблица объект -> long с открытой адресацией.
+ * Значения хранятся в массиве long без упаковки, поэтому увеличение счётчика существующего ключа не создаёт объектов.
+ * Ключи null не поддерживаются. Не потокобезопасна
+ * @param <K> - тип ключа
+ */
+class ObjectLongHashMap<K> {
+    private Object[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+    /**
+     * Размер, при превышении которого таблица увеличивается (заполнение не более половины)
+     */
+    private int threshold;
+
+    ObjectLongHashMap() {
+        allocate(16);
+    }
+
+    /**
+     * Прибавляет delta к значению ключа (отсутствующий ключ считается равным 0)
+     * @return - новое значение
+     */
+    long addTo(K key, long delta) {
+        int i = indexOf(key);
+        Object current;
+        while ((current = keys[i]) != null) {
+            if (current.equals(key))
+                return values[i] += delta;
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = delta;
+        if (++size > threshold)
+            rehash(keys.length * 2);
+        return delta;
+    }
+
+    /**
+     * Возвращает значение ключа или 0, если ключ отсутствует
+     */
+    long get(K key) {
+        int i = indexOf(key);
+        Object current;
+        while ((current = keys[i]) != null) {
+            if (current.equals(key))
+                return values[i];
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(ObjLongConsumer<? super K> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null)
+                action.accept((K) keys[i], values[i]);
+        }
+    }
+
+    private int indexOf(Object key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        threshold = capacity / 2;
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null)
+                continue;
+            int i = indexOf(oldKeys[j]);
+            while (keys[i] != null)
+                i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
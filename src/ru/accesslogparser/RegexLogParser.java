@@ -0,0 +1,60 @@
+package ru.accesslogparser;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Исходный разборщик строки лога на regex.
+ * Оставлен как эталон для сверки результатов с {@link CombinedLogParser}
+ */
+public class RegexLogParser implements LogParser {
+    @Override
+    public LogEntry parse(String row) throws LogEntryCreateException {
+        String ipAddr = null;
+        LogTime time = null;
+        HttpMethod method = null;
+        String path = null;
+        int responseCode = 0;
+        int responseSize = 0;
+        String referer = null;
+        UserAgent userAgent = null;
+
+        int count = 1;
+        Pattern pattern = Pattern.compile("([^ \"\\[]+)|(\\[(?<brackets>[^]]*)])|(\"(?<text>[^\"]*)\")");
+        Matcher matcher = pattern.matcher(row);
+
+        while (matcher.find()) {
+            try {
+                switch (count) {
+                    case 1 -> ipAddr = matcher.group();
+                    case 4 -> {
+                        OffsetDateTime parsed = OffsetDateTime.parse(matcher.group("brackets"), DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US));
+                        time = new LogTime(parsed.toLocalDateTime(), parsed.getOffset());
+                    }
+                    case 5 -> {
+                        path = matcher.group("text");
+                        for (HttpMethod meth : HttpMethod.values()) {
+                            if (path.indexOf(" ") > 0 && meth.name().equals(path.substring(0, path.indexOf(" ")))) {
+                                method = meth;
+                                path = path.substring(path.indexOf(" ")+1);
+                                break;
+                            }
+                        }
+                    }
+                    case 6 -> responseCode = Integer.parseInt(matcher.group());
+                    case 7 -> responseSize = Integer.parseInt(matcher.group());
+                    case 8 -> referer = matcher.group("text");
+                    case 9 -> userAgent = new UserAgent(matcher.group("text"));
+                }
+            } catch (Exception ex) {
+                throw new LogEntryCreateException(LogField.values()[count - 1], "Ошибка при разборе строки: " + ex, ex);
+            }
+            count++;
+        }
+
+        return new LogEntry(ipAddr, time, method, path, responseCode, responseSize, referer, userAgent);
+    }
+}
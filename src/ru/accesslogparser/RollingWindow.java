@@ -0,0 +1,190 @@
+package ru.accesslogparser;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Статистика за последние минуты лога: запросы, ошибки и трафик по интервалам фиксированной длины в кольцевом буфере.
+ * Интервалы старше длины буфера перезаписываются новыми, поэтому память не зависит от длительности работы.
+ * Записи старше буфера не учитываются. Период отсчитывается от текущего времени, если оно передано,
+ * поэтому после остановки трафика старые интервалы перестают учитываться без новых записей.
+ * Не потокобезопасен
+ */
+public class RollingWindow implements Consumer<LogEntry> {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long bucketSeconds;
+    /**
+     * Номер интервала (секунды от эпохи / bucketSeconds), записанного в ячейку, EMPTY - ячейка пуста
+     */
+    private final long[] buckets;
+    private final long[] requests;
+    private final long[] errors;
+    private final long[] traffic;
+    /**
+     * Номер самого позднего интервала
+     */
+    private long latest = EMPTY;
+
+    /**
+     * @param bucketCount - количество интервалов в буфере
+     * @param bucketSeconds - длина интервала в секундах
+     */
+    public RollingWindow(int bucketCount, long bucketSeconds) {
+        if (bucketCount <= 0 || bucketSeconds <= 0)
+            throw new IllegalArgumentException("Количество и длина интервалов должны быть больше нуля: " + bucketCount + ", " + bucketSeconds);
+
+        this.bucketSeconds = bucketSeconds;
+        buckets = new long[bucketCount];
+        requests = new long[bucketCount];
+        errors = new long[bucketCount];
+        traffic = new long[bucketCount];
+        clean();
+    }
+
+    /**
+     * Сброс накопленных интервалов
+     */
+    public void clean() {
+        Arrays.fill(buckets, EMPTY);
+        latest = EMPTY;
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        add(entry.getTimestamp(), entry.getResponseCode(), entry.getResponseSize());
+    }
+
+    /**
+     * Учитывает запрос
+     * @param timestamp - время запроса в секундах от эпохи
+     */
+    void add(long timestamp, int responseCode, int responseSize) {
+        long bucket = Math.floorDiv(timestamp, bucketSeconds);
+        if (latest != EMPTY && bucket <= latest - buckets.length)
+            return;
+
+        int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+        if (buckets[slot] != bucket) {
+            // В ячейке устаревший интервал: начинаем новый
+            buckets[slot] = bucket;
+            requests[slot] = 0;
+            errors[slot] = 0;
+            traffic[slot] = 0;
+        }
+
+        requests[slot] += 1;
+        traffic[slot] += responseSize;
+        if (responseCode >= 400 && responseCode < 600)
+            errors[slot] += 1;
+
+        if (latest == EMPTY || bucket > latest)
+            latest = bucket;
+    }
+
+    /**
+     * Возвращает итоги за последний период, заканчивающийся самым поздним интервалом лога.
+     * Подходит для разбора уже записанного лога; для текущей нагрузки см. {@link #getLast(Duration, long)}
+     * @param period - длина периода, не больше длины буфера
+     */
+    public Totals getLast(Duration period) {
+        return getUntil(period, latest);
+    }
+
+    /**
+     * Возвращает итоги за последний период, заканчивающийся текущим моментом или самым поздним интервалом лога,
+     * если в логе есть записи позже текущего времени. Интервалы, вышедшие за период, не учитываются,
+     * даже если новых записей не было. Время выполнения пропорционально количеству интервалов в периоде
+     * @param period - длина периода, не больше длины буфера
+     * @param nowEpochSecond - текущее время в секундах от эпохи
+     */
+    public Totals getLast(Duration period, long nowEpochSecond) {
+        long now = Math.floorDiv(nowEpochSecond, bucketSeconds);
+        return getUntil(period, (latest == EMPTY) ? EMPTY : Math.max(latest, now));
+    }
+
+    /**
+     * @param last - номер последнего интервала периода, EMPTY - записей нет
+     */
+    private Totals getUntil(Duration period, long last) {
+        long count = Math.max(1, Math.min(buckets.length, (period.getSeconds() + bucketSeconds - 1) / bucketSeconds));
+        Totals totals = new Totals(count * bucketSeconds);
+        if (last == EMPTY)
+            return totals;
+
+        for (long bucket = last - count + 1; bucket <= last; bucket++) {
+            int slot = (int) Math.floorMod(bucket, (long) buckets.length);
+            if (buckets[slot] != bucket)
+                continue;
+
+            totals.requests += requests[slot];
+            totals.errors += errors[slot];
+            totals.traffic += traffic[slot];
+            totals.peakRequests = Math.max(totals.peakRequests, requests[slot]);
+        }
+        return totals;
+    }
+
+    /**
+     * Итоги за период
+     */
+    public static class Totals {
+        private final long seconds;
+        private long requests;
+        private long errors;
+        private long traffic;
+        private long peakRequests;
+
+        private Totals(long seconds) {
+            this.seconds = seconds;
+        }
+
+        /**
+         * Длина периода в секундах
+         */
+        public long getSeconds() {
+            return seconds;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Количество ошибочных запросов (responseCode = 4хх, 5хх)
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getTraffic() {
+            return traffic;
+        }
+
+        /**
+         * Наибольшее количество запросов в одном интервале периода
+         */
+        public long getPeakRequests() {
+            return peakRequests;
+        }
+
+        /**
+         * Среднее количество запросов в секунду за период
+         */
+        public double getRequestsRate() {
+            return (double) requests / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return "Totals {" +
+                    "seconds=" + seconds +
+                    ", requests=" + requests +
+                    ", errors=" + errors +
+                    ", traffic=" + traffic +
+                    ", peakRequests=" + peakRequests +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package ru.accesslogparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Приближённый поиск самых частых ключей (алгоритм Space-Saving) в фиксированном объёме памяти.
+ * Отслеживается не более capacity ключей; новый ключ при заполнении вытесняет ключ с наименьшим счётчиком
+ * и наследует его значение как погрешность. Счётчик ключа завышен не более чем на N / capacity,
+ * где N - сумма всех увеличений, поэтому любой ключ с частотой больше N / capacity гарантированно отслеживается.
+ * Экземпляры объединяются так, что эти гарантии сохраняются для суммарного потока (см. {@link #merge(SpaceSaving)}).
+ * Счётчики и хеш-таблица ключей выделяются один раз, поэтому ни увеличение счётчика, ни вытеснение ключа не создают объектов.
+ * Не потокобезопасен
+ * @param <K> - тип ключа
+ */
+class SpaceSaving<K> {
+    private final int capacity;
+    /**
+     * Хеш-таблица ключ -> счётчик с открытой адресацией, заполненная не более чем наполовину
+     */
+    private final Counter<K>[] table;
+    private final int mask;
+    /**
+     * Двоичная куча по возрастанию счётчика: в корне - кандидат на вытеснение
+     */
+    private final Counter<K>[] heap;
+    private int size;
+
+    /**
+     * @param capacity - наибольшее количество отслеживаемых ключей
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    SpaceSaving(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Количество ключей должно быть больше нуля: " + capacity);
+
+        this.capacity = capacity;
+        this.table = (Counter<K>[]) new Counter[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        this.mask = table.length - 1;
+        this.heap = (Counter<K>[]) new Counter[capacity];
+    }
+
+    /**
+     * Увеличивает счётчик ключа
+     * @param increment - величина увеличения (не меньше нуля)
+     * @return - ячейка ключа: номер от 0 до capacity - 1, который не меняется, пока ключ отслеживается
+     */
+    int add(K key, long increment) {
+        Counter<K> counter = find(key);
+        if (counter != null) {
+            counter.count += increment;
+        } else if (size < capacity) {
+            counter = new Counter<>(key, increment, 0, size);
+            counter.position = size;
+            heap[size++] = counter;
+            insert(counter);
+            siftUp(counter.position);
+            return counter.slot;
+        } else {
+            // Вытесняем ключ с наименьшим счётчиком, его значение становится погрешностью нового ключа
+            counter = heap[0];
+            remove(counter);
+            counter.key = key;
+            counter.error = counter.count;
+            counter.count += increment;
+            insert(counter);
+            evicted(counter.slot);
+        }
+        siftDown(counter.position);
+        return counter.slot;
+    }
+
+    /**
+     * Вызывается, когда ячейка вытесненного ключа переходит к новому ключу.
+     * Наследники, хранящие данные по ячейкам, сбрасывают здесь данные вытесненного ключа
+     */
+    void evicted(int slot) {
+    }
+
+    /**
+     * Объединяет с другим экземпляром (mergeable Space-Saving). Ключ, которого нет в заполненном экземпляре,
+     * мог быть им вытеснен, поэтому к счётчику и погрешности такого ключа прибавляется наименьший счётчик
+     * этого экземпляра; счётчики ключей, которые есть в обоих, складываются. Из объединённых ключей остаются
+     * capacity с наибольшими счётчиками, и настоящая частота ключа по-прежнему лежит в пределах [count - error, count]
+     * @return - текущий экземпляр
+     */
+    SpaceSaving<K> merge(SpaceSaving<K> other) {
+        long thisMin = (size == capacity) ? heap[0].count : 0;
+        long otherMin = (other.size == other.capacity) ? other.heap[0].count : 0;
+
+        List<Counter<K>> all = new ArrayList<>(size + other.size);
+        for (int i = 0; i < size; i++) {
+            Counter<K> counter = heap[i];
+            Counter<K> same = other.find(counter.key);
+            counter.count += (same != null) ? same.count : otherMin;
+            counter.error += (same != null) ? same.error : otherMin;
+            all.add(counter);
+        }
+        // Ключи только из other получают новые счётчики; ячейка пока указывает на ячейку в other
+        for (int i = 0; i < other.size; i++) {
+            Counter<K> counter = other.heap[i];
+            if (find(counter.key) == null)
+                all.add(new Counter<>(counter.key, counter.count + thisMin, counter.error + thisMin, counter.slot));
+        }
+        all.sort(Comparator.comparingLong((Counter<K> counter) -> counter.count).reversed());
+
+        // Свободные ячейки: сначала ячейки не вошедших в результат ключей, затем незанятые по возрастанию,
+        // чтобы в незаполненном экземпляре занятые ячейки шли подряд
+        int kept = Math.min(capacity, all.size());
+        int[] free = new int[capacity];
+        int freeCount = 0;
+        for (int i = kept; i < all.size(); i++) {
+            Counter<K> counter = all.get(i);
+            if (find(counter.key) == counter) {
+                remove(counter);
+                free[freeCount++] = counter.slot;
+            }
+        }
+        for (int slot = size; slot < capacity; slot++)
+            free[freeCount++] = slot;
+
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+        int nextFree = 0;
+        for (int i = 0; i < kept; i++) {
+            Counter<K> counter = all.get(i);
+            Counter<K> same = other.find(counter.key);
+            if (find(counter.key) != counter) {
+                counter.slot = free[nextFree++];
+                insert(counter);
+                evicted(counter.slot);
+            }
+            if (same != null)
+                merged(counter.slot, other, same.slot);
+            counter.position = size;
+            heap[size++] = counter;
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--)
+            siftDown(i);
+        return this;
+    }
+
+    /**
+     * Вызывается при объединении для каждого ключа результата, который был в other
+     * @param slot - ячейка ключа в текущем экземпляре
+     * @param otherSlot - ячейка ключа в other
+     */
+    void merged(int slot, SpaceSaving<K> other, int otherSlot) {
+    }
+
+    /**
+     * Отслеживаемые ключи по убыванию счётчика
+     * @param limit - наибольшее количество возвращаемых ключей
+     */
+    List<Counter<K>> top(int limit) {
+        Counter<K>[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted, Comparator.comparingLong((Counter<K> counter) -> counter.count).reversed());
+
+        List<Counter<K>> result = new ArrayList<>(Math.min(limit, size));
+        for (int i = 0; i < sorted.length && i < limit; i++)
+            result.add(sorted[i].copy());
+        return result;
+    }
+
+    /**
+     * Ключи с наибольшим счётчиком
+     * @param guaranteed - сравнивать по гарантированной частоте (count - error) вместо оценки сверху.
+     *                   Подходит для ключей, которые встречаются подряд (например, секунды упорядоченного по времени лога):
+     *                   пока ключ не вытеснен, его гарантированная частота точна
+     */
+    List<Counter<K>> peaks(boolean guaranteed) {
+        long max = 0;
+        for (int i = 0; i < size; i++)
+            max = Math.max(max, heap[i].value(guaranteed));
+
+        List<Counter<K>> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (heap[i].value(guaranteed) == max)
+                result.add(heap[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Ячейка отслеживаемого ключа
+     * @return - номер ячейки или -1, если ключ не отслеживается
+     */
+    int slotOf(K key) {
+        Counter<K> counter = find(key);
+        return (counter == null) ? -1 : counter.slot;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    void clear() {
+        Arrays.fill(heap, 0, size, null);
+        Arrays.fill(table, null);
+        size = 0;
+    }
+
+    private Counter<K> find(Object key) {
+        for (int i = indexOf(key); ; i = (i + 1) & mask) {
+            Counter<K> counter = table[i];
+            if (counter == null || counter.key.equals(key))
+                return counter;
+        }
+    }
+
+    private void insert(Counter<K> counter) {
+        int i = indexOf(counter.key);
+        while (table[i] != null)
+            i = (i + 1) & mask;
+        table[i] = counter;
+    }
+
+    /**
+     * Удаляет счётчик из таблицы, сдвигая на освободившееся место следующие элементы цепочки,
+     * чтобы поиск по ним не останавливался на пустой ячейке
+     */
+    private void remove(Counter<K> counter) {
+        int hole = indexOf(counter.key);
+        while (table[hole] != counter)
+            hole = (hole + 1) & mask;
+
+        for (int i = (hole + 1) & mask; table[i] != null; i = (i + 1) & mask) {
+            // Элемент переносится, если его исходная ячейка не лежит между дырой и его текущей ячейкой
+            int home = indexOf(table[i].key);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = null;
+    }
+
+    private int indexOf(Object key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void siftUp(int i) {
+        Counter<K> counter = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].count <= counter.count)
+                break;
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(counter, i);
+    }
+
+    private void siftDown(int i) {
+        Counter<K> counter = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count)
+                child++;
+            if (counter.count <= heap[child].count)
+                break;
+            place(heap[child], i);
+            i = child;
+        }
+        place(counter, i);
+    }
+
+    private void place(Counter<K> counter, int i) {
+        heap[i] = counter;
+        counter.position = i;
+    }
+
+    /**
+     * Отслеживаемый ключ: оценка частоты сверху и её наибольшая погрешность
+     */
+    static class Counter<K> {
+        private K key;
+        private long count;
+        private long error;
+        private int position;
+        /**
+         * Номер ячейки счётчика, постоянный в отличие от позиции в куче
+         */
+        private int slot;
+
+        private Counter(K key, long count, long error, int slot) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.slot = slot;
+        }
+
+        private long value(boolean guaranteed) {
+            return guaranteed ? count - error : count;
+        }
+
+        private Counter<K> copy() {
+            return new Counter<>(key, count, error, slot);
+        }
+
+        K getKey() {
+            return key;
+        }
+
+        /**
+         * Оценка частоты; настоящая частота лежит в пределах [count - error, count]
+         */
+        long getCount() {
+            return count;
+        }
+
+        long getError() {
+            return error;
+        }
+
+        int getSlot() {
+            return slot;
+        }
+    }
+}
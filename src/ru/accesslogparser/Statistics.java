@@ -1,30 +1,57 @@
 package ru.accesslogparser;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
- * Класс подсчёта статистики по разобранному лог-файлу
+ * Класс подсчёта статистики по разобранному лог-файлу.
+ * Экземпляр не потокобезопасен: при параллельном разборе каждый поток наполняет свой экземпляр,
+ * а результаты объединяются через {@link #merge(Statistics)}.
+ * В приближённом режиме ({@link #Statistics(double, int)}) уникальные значения и самые частые ip адреса и секунды
+ * считаются скетчами фиксированного размера, поэтому память не растёт с количеством различных значений в логе
  */
-public class Statistics {
-    private final List<LogEntry> logEntries;
+public class Statistics implements Consumer<LogEntry> {
+    /**
+     * Выделение доменов из referer, общее для всех экземпляров (кэш не зависит от подсчитанной статистики)
+     */
+    private static final DomainExtractor DOMAIN_EXTRACTOR = new DomainExtractor(4096);
+    /**
+     * Количество ключей, отслеживаемых для каждого топ-отчёта по умолчанию (в обоих режимах).
+     * Отслеживаемый ключ занимает около 50 байт без учёта самой строки ключа,
+     * поэтому три топ-отчёта по умолчанию занимают порядка 150 КБ и строки 3000 ключей
+     */
+    public static final int DEFAULT_TOP_CAPACITY = 1000;
+    /**
+     * Точность гистограмм размера ответа: ошибка перцентиля не больше 1/128 (меньше 1%) для всех запросов
+     * и классов кода ответа и не больше 1/32 для отдельных путей
+     */
+    private static final int RESPONSE_SIZE_PRECISION = 7;
+    private static final int PATH_RESPONSE_SIZE_PRECISION = 5;
+    /**
+     * Количество самых запрашиваемых путей, для которых ведутся гистограммы размера ответа.
+     * Не зависит от ёмкости топ-отчётов: гистограммы занимают не больше PATH_HISTOGRAMS * 7 КБ
+     */
+    private static final int PATH_HISTOGRAMS = 32;
 
+    /**
+     * Общее число учтённых записей
+     */
+    private long totalRequests;
     /**
      * Общий трафик
      */
     private long totalTraffic;
     /**
-     * Минимальное время в логе
+     * Минимальное время в логе (секунды от эпохи) и смещение часового пояса, с которым оно записано
      */
-    private LocalDateTime minTime;
+    private long minTime;
+    private int minTimeOffset;
     /**
-     * Максимальное время в логе
+     * Максимальное время в логе (секунды от эпохи) и смещение часового пояса, с которым оно записано
      */
-    private LocalDateTime maxTime;
+    private long maxTime;
+    private int maxTimeOffset;
     /**
      * Общее число пользовательских запросов (не от ботов)
      */
@@ -45,15 +72,66 @@ public class Statistics {
     private final HashSet<String> nonExistingPages;
 
     /**
-     * Статистика используемых ОС (доля от 0 до 1)
+     * Количество запросов по ОС, индекс - {@link UserAgent.OS#ordinal()}
      */
-    private final HashMap<String, Integer> osMap;
+    private final long[] osCounts;
     /**
-     * Статистика используемых браузеров (доля от 0 до 1)
+     * Количество запросов по браузерам, индекс - {@link UserAgent.Browsers#ordinal()}
      */
-    private final HashMap<String, Integer> browserMap;
+    private final long[] browserCounts;
 
     private final HashSet<String> domains;
+
+    /**
+     * Количество пользовательских запросов (не от ботов) в каждую секунду от эпохи
+     */
+    private final LongLongHashMap userTimeCounts;
+    /**
+     * Секунды с наибольшим количеством пользовательских запросов (первые peakTimeSize элементов).
+     * Счётчик секунды только растёт, поэтому при одном пиковом значении секунда добавляется не больше одного раза
+     */
+    private long[] peakTimes;
+    private int peakTimeSize;
+    private long peakTimeCount;
+
+    /**
+     * Количество пользовательских запросов (не от ботов) с каждого ip адреса.
+     * Ключи - уникальные ip адреса пользователей
+     */
+    private final ObjectLongHashMap<String> userIpCounts;
+    /**
+     * ip адреса с наибольшим количеством пользовательских запросов
+     */
+    private final HashSet<String> peakIps;
+    private long peakIpCount;
+
+    /**
+     * Скетчи приближённого режима (null в точном режиме): количество различных ip адресов пользователей,
+     * существующих и несуществующих страниц и доменов
+     */
+    private final HyperLogLog userIpSketch;
+    private final HyperLogLog existingPagesSketch;
+    private final HyperLogLog nonExistingPagesSketch;
+    private final HyperLogLog domainsSketch;
+    /**
+     * Самые частые ip адреса и секунды пользовательских запросов в приближённом режиме (null в точном режиме)
+     */
+    private final SpaceSaving<String> topIps;
+    private final LongSpaceSaving topSeconds;
+    /**
+     * Топ-отчёты в ограниченной памяти в обоих режимах: самые запрашиваемые пути,
+     * referer запросов несуществующих страниц (код 404) и ip адреса с наибольшим трафиком
+     */
+    private final SpaceSaving<String> topPaths;
+    private final SpaceSaving<String> topNotFoundReferers;
+    private final SpaceSaving<String> topTrafficIps;
+    /**
+     * Гистограммы размера ответа: по всем запросам, по классам кода ответа 2xx - 5xx
+     * и по самым запрашиваемым путям
+     */
+    private final LogLinearHistogram responseSizes;
+    private final LogLinearHistogram[] statusResponseSizes;
+    private final TopHistograms<String> pathResponseSizes;
     /**
      * Временные интервалы для подсчёта средних значений за единицу времени
      */
@@ -86,30 +164,119 @@ public class Statistics {
     }
 
     public Statistics() {
+        this(DEFAULT_TOP_CAPACITY);
+    }
+
+    /**
+     * Создаёт статистику в точном режиме
+     * @param topCapacity - количество ключей, отслеживаемых для каждого топ-отчёта ({@link #getTopPaths} и др.);
+     *                    счётчик ключа в отчёте завышается не более чем на (сумма значений отчёта) / topCapacity.
+     *                    Память топ-отчётов ограничена 3 * topCapacity ключами
+     */
+    public Statistics(int topCapacity) {
+        this(false, 0, 0, topCapacity);
+    }
+
+    /**
+     * Создаёт статистику в приближённом режиме. Множества страниц и доменов не сохраняются,
+     * доступно только их приближённое количество
+     * @param distinctError - относительная ошибка подсчёта различных значений, например 0.01
+     * @param heavyHitters - количество отслеживаемых самых частых ip адресов и секунд пользовательских запросов;
+     *                     счётчик завышается не более чем на (число запросов пользователей) / heavyHitters.
+     *                     Топ-отчёты отслеживают {@link #DEFAULT_TOP_CAPACITY} ключей
+     */
+    public Statistics(double distinctError, int heavyHitters) {
+        this(true, distinctError, heavyHitters, DEFAULT_TOP_CAPACITY);
+    }
+
+    /**
+     * Создаёт статистику в приближённом режиме с заданной ёмкостью топ-отчётов.
+     * Память не зависит от лога: 4 скетча {@link HyperLogLog}, 2 * heavyHitters и 3 * topCapacity отслеживаемых ключей,
+     * а также гистограммы размера ответа (не больше 350 КБ)
+     * @param distinctError - относительная ошибка подсчёта различных значений, например 0.01
+     * @param heavyHitters - количество отслеживаемых самых частых ip адресов и секунд пользовательских запросов
+     * @param topCapacity - количество ключей, отслеживаемых для каждого топ-отчёта ({@link #getTopPaths} и др.)
+     */
+    public Statistics(double distinctError, int heavyHitters, int topCapacity) {
+        this(true, distinctError, heavyHitters, topCapacity);
+    }
+
+    /**
+     * @param heavyHitters - количество ключей, отслеживаемых для пиковых ip адресов и секунд в приближённом режиме
+     * @param topCapacity - количество ключей, отслеживаемых для каждого топ-отчёта
+     */
+    private Statistics(boolean approximate, double distinctError, int heavyHitters, int topCapacity) {
         existingPages = new HashSet<>();
         nonExistingPages = new HashSet<>();
-        osMap = new HashMap<>();
-        browserMap = new HashMap<>();
-        logEntries = new ArrayList<>();
+        osCounts = new long[UserAgent.OS.values().length];
+        browserCounts = new long[UserAgent.Browsers.values().length];
         domains = new HashSet<>();
+        userTimeCounts = new LongLongHashMap();
+        peakTimes = new long[16];
+        userIpCounts = new ObjectLongHashMap<>();
+        peakIps = new HashSet<>();
+        userIpSketch = approximate ? HyperLogLog.withError(distinctError) : null;
+        existingPagesSketch = approximate ? HyperLogLog.withError(distinctError) : null;
+        nonExistingPagesSketch = approximate ? HyperLogLog.withError(distinctError) : null;
+        domainsSketch = approximate ? HyperLogLog.withError(distinctError) : null;
+        topIps = approximate ? new SpaceSaving<>(heavyHitters) : null;
+        topSeconds = approximate ? new LongSpaceSaving(heavyHitters) : null;
+        topPaths = new SpaceSaving<>(topCapacity);
+        topNotFoundReferers = new SpaceSaving<>(topCapacity);
+        topTrafficIps = new SpaceSaving<>(topCapacity);
+        responseSizes = new LogLinearHistogram(RESPONSE_SIZE_PRECISION);
+        statusResponseSizes = new LogLinearHistogram[4];
+        for (int i = 0; i < statusResponseSizes.length; i++)
+            statusResponseSizes[i] = new LogLinearHistogram(RESPONSE_SIZE_PRECISION);
+        pathResponseSizes = new TopHistograms<>(PATH_HISTOGRAMS, PATH_RESPONSE_SIZE_PRECISION);
         clean();
     }
 
+    /**
+     * Признак приближённого режима
+     */
+    public boolean isApproximate() {
+        return topIps != null;
+    }
+
     /**
      * Сброс подсчитанной статистики
      */
     public void clean() {
+        totalRequests = 0;
         totalTraffic = 0;
-        minTime = LocalDateTime.MAX;
-        maxTime = LocalDateTime.MIN;
+        minTime = Long.MAX_VALUE;
+        minTimeOffset = 0;
+        maxTime = Long.MIN_VALUE;
+        maxTimeOffset = 0;
         totalUsersRequests = 0;
         totalErrorRequests = 0;
-        logEntries.clear();
         existingPages.clear();
         nonExistingPages.clear();
-        osMap.clear();
-        browserMap.clear();
+        Arrays.fill(osCounts, 0);
+        Arrays.fill(browserCounts, 0);
         domains.clear();
+        userTimeCounts.clear();
+        peakTimeSize = 0;
+        peakTimeCount = 0;
+        userIpCounts.clear();
+        peakIps.clear();
+        peakIpCount = 0;
+        topPaths.clear();
+        topNotFoundReferers.clear();
+        topTrafficIps.clear();
+        responseSizes.clear();
+        for (LogLinearHistogram histogram : statusResponseSizes)
+            histogram.clear();
+        pathResponseSizes.clear();
+        if (isApproximate()) {
+            userIpSketch.clear();
+            existingPagesSketch.clear();
+            nonExistingPagesSketch.clear();
+            domainsSketch.clear();
+            topIps.clear();
+            topSeconds.clear();
+        }
     }
 
     /**
@@ -117,45 +284,210 @@ public class Statistics {
      * @param entry - предварительно распарсенная строка
      */
     public void addEntry(LogEntry entry) {
-        logEntries.add(entry);
+        UserAgent userAgent = entry.getUserAgent();
+        add(entry.getTimestamp(), entry.getLogTime().getOffsetSeconds(), entry.getIpAddr(), entry.getPath(), entry.getResponseCode(),
+                entry.getResponseSize(), entry.getReferer(), userAgent.getOsType(), userAgent.getBrowserType(), userAgent.isBot());
+    }
 
-        totalTraffic += entry.getResponseSize();
-        if (minTime.isAfter(entry.getTime()))
-            minTime = entry.getTime();
+    /**
+     * Подсчитывает статистику по всем записям колоночного хранилища
+     * @param columns - хранилище разобранных записей
+     */
+    public void addColumns(LogColumns columns) {
+        LogColumns.Cursor row = columns.cursor();
+        while (row.next()) {
+            add(row.getTimestamp(), row.getOffsetSeconds(), row.getIpAddr(), row.getPath(), row.getResponseCode(),
+                    row.getResponseSize(), row.getReferer(), row.getOs(), row.getBrowser(), row.isBot());
+        }
+    }
+
+    /**
+     * Подсчитывает статистику по полям одной записи
+     * @param timestamp - время запроса в секундах от эпохи
+     * @param offsetSeconds - смещение часового пояса записи
+     */
+    private void add(long timestamp, int offsetSeconds, String ipAddr, String path, int responseCode, int responseSize,
+                     String referer, UserAgent.OS os, UserAgent.Browsers browser, boolean bot) {
+        totalRequests += 1;
+        totalTraffic += responseSize;
+        if (path != null) {
+            topPaths.add(path, 1);
+            pathResponseSizes.record(path, responseSize);
+        }
+        topTrafficIps.add(ipAddr, responseSize);
+        responseSizes.record(responseSize);
+        int statusClass = responseCode / 100;
+        if (statusClass >= 2 && statusClass <= 5)
+            statusResponseSizes[statusClass - 2].record(responseSize);
+        if (minTime > timestamp) {
+            minTime = timestamp;
+            minTimeOffset = offsetSeconds;
+        }
 
-        if (maxTime.isBefore(entry.getTime()))
-            maxTime = entry.getTime();
+        if (maxTime < timestamp) {
+            maxTime = timestamp;
+            maxTimeOffset = offsetSeconds;
+        }
 
-        if (entry.getReferer().length() > 1) {
-            switch (entry.getResponseCode()) {
-                case 200 -> existingPages.add(entry.getReferer());
-                case 404 -> nonExistingPages.add(entry.getReferer());
+        if (referer.length() > 1) {
+            switch (responseCode) {
+                case 200 -> addDistinct(existingPages, existingPagesSketch, referer);
+                case 404 -> {
+                    addDistinct(nonExistingPages, nonExistingPagesSketch, referer);
+                    topNotFoundReferers.add(referer, 1);
+                }
             }
         }
 
-        // Заполняем частоту использования ОС
-        String os = entry.getUserAgent().getOs();
-        Integer value = osMap.get(os);
-        osMap.put(os, value == null ? 1 : value+1);
-
-        // Заполняем частоту использования браузеров
-        String browser = entry.getUserAgent().getBrowser();
-        value = browserMap.get(browser);
-        browserMap.put(browser, value == null ? 1 : value+1);
+        // Заполняем частоту использования ОС и браузеров
+        osCounts[os.ordinal()] += 1;
+        browserCounts[browser.ordinal()] += 1;
 
-        // Подсчёт не ботов
-        if (!entry.getUserAgent().isBot())
+        // Подсчёт не ботов и их пиковых значений по времени и ip адресам
+        if (!bot) {
             totalUsersRequests += 1;
 
+            if (isApproximate()) {
+                topSeconds.add(timestamp, 1);
+                topIps.add(ipAddr, 1);
+                userIpSketch.add(ipAddr);
+            } else {
+                addTimeCount(timestamp, 1);
+                peakIpCount = addCount(userIpCounts, peakIps, peakIpCount, ipAddr, 1);
+            }
+        }
+
         // Подсчёт ошибочных запросов
-        if (entry.getResponseCode() >= 400 && entry.getResponseCode() < 600)
+        if (responseCode >= 400 && responseCode < 600)
             totalErrorRequests += 1;
 
         // Выделение доменного имени
-        Pattern pattern = Pattern.compile("^(http(s)?://|)(www\\.|)(?<domain>([^/]+)(?<!www)\\.[^/.&]+)($|/.*)");
-        Matcher matcher = pattern.matcher(entry.getReferer());
-        if (matcher.find())
-            domains.add(matcher.group("domain"));
+        String domain = DOMAIN_EXTRACTOR.extract(referer);
+        if (domain != null)
+            addDistinct(domains, domainsSketch, domain);
+    }
+
+    /**
+     * Добавляет значение в множество или, в приближённом режиме, в скетч
+     */
+    private static void addDistinct(HashSet<String> values, HyperLogLog sketch, String value) {
+        if (sketch != null)
+            sketch.add(value);
+        else
+            values.add(value);
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        addEntry(entry);
+    }
+
+    /**
+     * Возвращает общее число учтённых записей
+     */
+    public long getTotalRequests() {
+        return totalRequests;
+    }
+
+    /**
+     * Увеличивает количество пользовательских запросов в секунду и обновляет пиковые секунды
+     * @param second - секунда от эпохи
+     * @param increment - величина увеличения
+     */
+    private void addTimeCount(long second, long increment) {
+        long count = userTimeCounts.addTo(second, increment);
+        if (count > peakTimeCount) {
+            peakTimeCount = count;
+            peakTimeSize = 0;
+        }
+        if (count == peakTimeCount) {
+            if (peakTimeSize == peakTimes.length)
+                peakTimes = Arrays.copyOf(peakTimes, peakTimeSize * 2);
+            peakTimes[peakTimeSize++] = second;
+        }
+    }
+
+    /**
+     * Увеличивает счётчик ключа и обновляет множество ключей с наибольшим значением
+     * @param counts - счётчики по ключам
+     * @param peaks - ключи с наибольшим значением счётчика
+     * @param peak - текущее наибольшее значение
+     * @param key - ключ
+     * @param increment - величина увеличения
+     * @return - новое наибольшее значение
+     */
+    private static <K> long addCount(ObjectLongHashMap<K> counts, HashSet<K> peaks, long peak, K key, long increment) {
+        long count = counts.addTo(key, increment);
+        if (count > peak) {
+            peak = count;
+            peaks.clear();
+        }
+        if (count == peak)
+            peaks.add(key);
+        return peak;
+    }
+
+    /**
+     * Добавляет статистику, подсчитанную другим экземпляром (например, в другом потоке).
+     * Результат совпадает с последовательным подсчётом всех записей в одном экземпляре
+     * (в приближённом режиме - в пределах погрешности скетчей)
+     * @param other - объединяемая статистика того же режима, не изменяется
+     * @return - текущий экземпляр
+     */
+    public Statistics merge(Statistics other) {
+        if (isApproximate() != other.isApproximate())
+            throw new IllegalArgumentException("Нельзя объединить точную и приближённую статистику");
+
+        totalRequests += other.totalRequests;
+        totalTraffic += other.totalTraffic;
+        totalUsersRequests += other.totalUsersRequests;
+        totalErrorRequests += other.totalErrorRequests;
+
+        if (minTime > other.minTime) {
+            minTime = other.minTime;
+            minTimeOffset = other.minTimeOffset;
+        }
+        if (maxTime < other.maxTime) {
+            maxTime = other.maxTime;
+            maxTimeOffset = other.maxTimeOffset;
+        }
+
+        existingPages.addAll(other.existingPages);
+        nonExistingPages.addAll(other.nonExistingPages);
+        domains.addAll(other.domains);
+
+        for (int i = 0; i < osCounts.length; i++)
+            osCounts[i] += other.osCounts[i];
+        for (int i = 0; i < browserCounts.length; i++)
+            browserCounts[i] += other.browserCounts[i];
+
+        other.userTimeCounts.forEach(this::addTimeCount);
+        other.userIpCounts.forEach((ip, count) -> peakIpCount = addCount(userIpCounts, peakIps, peakIpCount, ip, count));
+        topPaths.merge(other.topPaths);
+        topNotFoundReferers.merge(other.topNotFoundReferers);
+        topTrafficIps.merge(other.topTrafficIps);
+        responseSizes.merge(other.responseSizes);
+        for (int i = 0; i < statusResponseSizes.length; i++)
+            statusResponseSizes[i].merge(other.statusResponseSizes[i]);
+        pathResponseSizes.merge(other.pathResponseSizes);
+
+        if (isApproximate()) {
+            userIpSketch.merge(other.userIpSketch);
+            existingPagesSketch.merge(other.existingPagesSketch);
+            nonExistingPagesSketch.merge(other.nonExistingPagesSketch);
+            domainsSketch.merge(other.domainsSketch);
+            topIps.merge(other.topIps);
+            topSeconds.merge(other.topSeconds);
+        }
+
+        return this;
+    }
+
+    /**
+     * Количество секунд между минимальным и максимальным временем в логе
+     */
+    private long getDurationSeconds() {
+        return maxTime - minTime;
     }
 
     /**
@@ -171,7 +503,7 @@ public class Statistics {
      * @return - средний трафик за указанный интервал
      */
     public double getTrafficRate(TimeIntervals interval) {
-        return totalTraffic / (Duration.between(minTime, maxTime).toSeconds() / interval.getSecondsCount());
+        return totalTraffic / (getDurationSeconds() / interval.getSecondsCount());
     }
 
     /**
@@ -187,7 +519,7 @@ public class Statistics {
      * @return - среднее количество запросов за интервал
      */
     public double getUserRequestsRate(TimeIntervals interval) {
-        return totalUsersRequests / (Duration.between(minTime, maxTime).toSeconds() / interval.getSecondsCount());
+        return totalUsersRequests / (getDurationSeconds() / interval.getSecondsCount());
     }
 
     public double getErrorRequestsRate() {
@@ -200,7 +532,7 @@ public class Statistics {
      * @return - среднее количество ошибочных запросов за интервал
      */
     public double getErrorRequestsRate(TimeIntervals interval) {
-        return totalErrorRequests / (Duration.between(minTime, maxTime).toSeconds() / interval.getSecondsCount());
+        return totalErrorRequests / (getDurationSeconds() / interval.getSecondsCount());
     }
 
     /**
@@ -208,28 +540,28 @@ public class Statistics {
      * @return - отношение общего числа запросов от пользователей к числу уникальных ip адресов
      */
     public double getUserAttendanceRate() {
-        return (double) totalUsersRequests / logEntries.stream()
-                .filter(e -> !e.getUserAgent().isBot())
-                .map(LogEntry::getIpAddr)
-                .distinct()
-                .count();
+        long users = isApproximate() ? userIpSketch.estimate() : userIpCounts.size();
+        return (double) totalUsersRequests / users;
     }
 
     /**
      * Возвращает рассчитанные доли относительно общего количества записией в логе
-     * @param srcMap - HashMap, для значений в которой нужно подсчитать их доли
-     * @return - HashMap c рассчитанными долями относительно общего количества элементов
+     * @param counts - счётчики, индекс - порядковый номер значения перечисления
+     * @param names - значения перечисления
+     * @return - HashMap c рассчитанными долями относительно общего количества элементов (только встречавшиеся значения)
      */
-    private HashMap<String, Double> getMapRates(HashMap<String, Integer> srcMap) {
-        int totalRecsCount = 0;
+    private HashMap<String, Double> getMapRates(long[] counts, Enum<?>[] names) {
+        long totalRecsCount = 0;
 
-        for(Integer value : srcMap.values())
+        for (long value : counts)
             totalRecsCount += value;
 
         HashMap<String, Double> result = new HashMap<>();
 
-        for (Map.Entry<String, Integer> entry: srcMap.entrySet())
-            result.put(entry.getKey(), (double)entry.getValue() / totalRecsCount);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0)
+                result.put(names[i].name(), (double) counts[i] / totalRecsCount);
+        }
 
         return result;
     }
@@ -239,7 +571,7 @@ public class Statistics {
      * @return - HashMap c key-именем ОС и value-значением её доли
      */
     public HashMap<String, Double> getOsRate() {
-        return getMapRates(osMap);
+        return getMapRates(osCounts, UserAgent.OS.values());
     }
 
     /**
@@ -247,11 +579,11 @@ public class Statistics {
      * @return - HashMap c key-именем браузера и value-значением его доли
      */
     public HashMap<String, Double> getBrowserRate() {
-        return getMapRates(browserMap);
+        return getMapRates(browserCounts, UserAgent.Browsers.values());
     }
 
     /**
-     * Возвращает список существующих странниц (responseCode = 200)
+     * Возвращает список существующих странниц (responseCode = 200). В приближённом режиме список пуст
      * @return - HashSet c адресами страниц
      */
     public HashSet<String> getExistingPages() {
@@ -259,7 +591,7 @@ public class Statistics {
     }
 
     /**
-     * Возвращает список несуществующих странниц (responseCode = 404)
+     * Возвращает список несуществующих странниц (responseCode = 404). В приближённом режиме список пуст
      * @return - HashSet c адресами страниц
      */
     public HashSet<String> getNonExistingPages() {
@@ -267,25 +599,33 @@ public class Statistics {
     }
 
     /**
-     * Рассчитывает пиковые значения с точки зрения количества запросов в еденицу времени
-     * @return - Map cо значением временной метки и количеством запросов в этот момент
+     * Количество различных существующих страниц (в приближённом режиме - оценка)
      */
-    public Map<LocalDateTime, Integer> getPeakTimeAttendance() {
-        // Группируем по времени
-        Map<LocalDateTime, Long> map = logEntries.stream()
-                .filter(e -> !e.getUserAgent().isBot())
-                .collect(Collectors.groupingBy(LogEntry::getTime, Collectors.counting()));
+    public long getExistingPagesCount() {
+        return isApproximate() ? existingPagesSketch.estimate() : existingPages.size();
+    }
 
-        // Считаем элементы с максимальным количеством запросов
-        long max = map.values()
-                .stream()
-                .max(Long::compareTo).orElse((long)0);
+    /**
+     * Количество различных несуществующих страниц (в приближённом режиме - оценка)
+     */
+    public long getNonExistingPagesCount() {
+        return isApproximate() ? nonExistingPagesSketch.estimate() : nonExistingPages.size();
+    }
 
-        // Отбираем наиболее пиковые времена
-        return map.entrySet()
-                .stream()
-                .filter(e -> e.getValue() == max)
-                .collect(Collectors.toMap(Map.Entry::getKey, e-> e.getValue().intValue()));
+    /**
+     * Рассчитывает пиковые значения с точки зрения количества запросов в еденицу времени
+     * @return - Map cо значением временной метки (в часовом поясе последней записи лога) и количеством запросов в этот момент
+     */
+    public Map<LocalDateTime, Integer> getPeakTimeAttendance() {
+        HashMap<LocalDateTime, Integer> result = new HashMap<>();
+        if (isApproximate()) {
+            // Секунды идут в логе подряд, поэтому гарантированная частота секунды точна, пока она отслеживается
+            topSeconds.peaks(true, (second, count) -> result.put(LogTime.toLocalTime(second, maxTimeOffset), (int) count));
+            return result;
+        }
+        for (int i = 0; i < peakTimeSize; i++)
+            result.put(LogTime.toLocalTime(peakTimes[i], maxTimeOffset), (int) peakTimeCount);
+        return result;
     }
 
     /**
@@ -293,34 +633,120 @@ public class Statistics {
      * @return - Map c ip пользователя и количеством запросов от него
      */
     public Map<String, Integer> getPeakUserAttendance() {
-        Map<String, Long> map = logEntries.stream()
-                .filter(e -> !e.getUserAgent().isBot())
-                .collect(Collectors.groupingBy(LogEntry::getIpAddr, Collectors.counting()));
+        HashMap<String, Integer> result = new HashMap<>();
+        if (isApproximate()) {
+            for (SpaceSaving.Counter<String> peak : topIps.peaks(false))
+                result.put(peak.getKey(), (int) peak.getCount());
+            return result;
+        }
+        for (String ip : peakIps)
+            result.put(ip, (int) peakIpCount);
+        return result;
+    }
+
+    /**
+     * Самые запрашиваемые пути по убыванию количества запросов
+     * @param limit - наибольшее количество путей в отчёте, имеет смысл не больше количества отслеживаемых ключей
+     * @return - Map с путём и оценкой количества запросов сверху
+     */
+    public Map<String, Long> getTopPaths(int limit) {
+        return toMap(topPaths, limit);
+    }
 
-        long max = map.values()
-                .stream()
-                .max(Long::compareTo).orElse((long)0);
+    /**
+     * Referer, с которых чаще всего переходили на несуществующие страницы (код ответа 404)
+     * @param limit - наибольшее количество referer в отчёте
+     * @return - Map с referer и оценкой количества таких запросов сверху
+     */
+    public Map<String, Long> getTopNotFoundReferers(int limit) {
+        return toMap(topNotFoundReferers, limit);
+    }
 
-        return map.entrySet()
-                .stream()
-                .filter(e -> e.getValue() == max)
-                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().intValue()));
+    /**
+     * Ip адреса с наибольшим суммарным размером ответов
+     * @param limit - наибольшее количество ip адресов в отчёте
+     * @return - Map с ip адресом и оценкой трафика сверху
+     */
+    public Map<String, Long> getTopIpsByTraffic(int limit) {
+        return toMap(topTrafficIps, limit);
+    }
+
+    /**
+     * Перцентили размера ответа по всем запросам
+     * @param percentiles - перцентили от 0 до 100, например 50, 99, 99.9
+     * @return - значения перцентилей в том же порядке, завышенные не более чем на 1%; нули, если запросов нет
+     */
+    public long[] getResponseSizePercentiles(double... percentiles) {
+        return valuesAt(responseSizes, percentiles);
+    }
+
+    /**
+     * Перцентили размера ответа по запросам с кодом ответа заданного класса
+     * @param statusClass - класс кода ответа: 2 для 2xx, 3 для 3xx, 4 для 4xx или 5 для 5xx
+     * @param percentiles - перцентили от 0 до 100
+     */
+    public long[] getStatusResponseSizePercentiles(int statusClass, double... percentiles) {
+        if (statusClass < 2 || statusClass > 5)
+            throw new IllegalArgumentException("Класс кода ответа должен быть от 2 до 5: " + statusClass);
+        return valuesAt(statusResponseSizes[statusClass - 2], percentiles);
     }
 
     /**
-     * Возвращает список уникальных доменных имен из {@link LogEntry#getReferer()}
+     * Перцентили размера ответа для самых запрашиваемых путей в том же порядке, что и {@link #getTopPaths(int)}.
+     * Гистограммы ведутся только для 32 самых частых путей; путь без гистограммы в отчёт не попадает.
+     * Для пути, который вытеснялся из их числа, учитываются только запросы после его последнего возвращения
+     * @param limit - наибольшее количество путей в отчёте (не больше 32)
+     * @param percentiles - перцентили от 0 до 100
+     * @return - Map с путём по убыванию количества запросов и значениями перцентилей, завышенными не более чем на 1/32
+     */
+    public Map<String, long[]> getTopPathResponseSizePercentiles(int limit, double... percentiles) {
+        LinkedHashMap<String, long[]> result = new LinkedHashMap<>();
+        for (SpaceSaving.Counter<String> counter : topPaths.top(Math.min(limit, PATH_HISTOGRAMS))) {
+            LogLinearHistogram histogram = pathResponseSizes.histogram(counter.getKey());
+            if (histogram != null)
+                result.put(counter.getKey(), valuesAt(histogram, percentiles));
+        }
+        return result;
+    }
+
+    private static long[] valuesAt(LogLinearHistogram histogram, double[] percentiles) {
+        long[] result = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++)
+            result[i] = histogram.getValueAtPercentile(percentiles[i]);
+        return result;
+    }
+
+    /**
+     * Ключи по убыванию счётчика в порядке добавления в Map
+     */
+    private static Map<String, Long> toMap(SpaceSaving<String> top, int limit) {
+        LinkedHashMap<String, Long> result = new LinkedHashMap<>();
+        for (SpaceSaving.Counter<String> counter : top.top(limit))
+            result.put(counter.getKey(), counter.getCount());
+        return result;
+    }
+
+    /**
+     * Возвращает список уникальных доменных имен из {@link LogEntry#getReferer()}. В приближённом режиме список пуст
      * @return - HashSet уникальных доменных имен
      */
     public HashSet<String> getDomains() {
         return new HashSet<>(domains);
     }
 
+    /**
+     * Количество уникальных доменных имён (в приближённом режиме - оценка)
+     */
+    public long getDomainsCount() {
+        return isApproximate() ? domainsSketch.estimate() : domains.size();
+    }
+
     @Override
     public String toString() {
         return "Statistics {" +
                 "totalTraffic=" + totalTraffic +
-                ", minTime=" + minTime +
-                ", maxTime=" + maxTime +
+                ", minTime=" + (totalRequests == 0 ? LocalDateTime.MAX : LogTime.toLocalTime(minTime, minTimeOffset)) +
+                ", maxTime=" + (totalRequests == 0 ? LocalDateTime.MIN : LogTime.toLocalTime(maxTime, maxTimeOffset)) +
                 '}';
     }
 }
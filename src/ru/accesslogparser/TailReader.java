@@ -0,0 +1,201 @@
+package ru.accesslogparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Читает строки, дописываемые в конец файла, запоминая позицию прочитанного.
+ * Ротация определяется по смене идентификатора файла (inode), усечение - по уменьшению размера
+ * или по изменению последних прочитанных байтов: файл мог быть усечён и дописан дальше прежней позиции между опросами.
+ * Концом строки считается '\n' (завершающий '\r' отбрасывается), незавершённая строка ждёт продолжения
+ */
+class TailReader implements Closeable {
+    private final Path path;
+    private final Charset charset = Charset.defaultCharset();
+    /**
+     * Количество последних прочитанных байтов, по которым проверяется, что файл не переписан
+     */
+    private static final int MARK_SIZE = 64;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    private FileChannel channel;
+    /**
+     * Идентификатор открытого файла (null, если файловая система его не поддерживает)
+     */
+    private Object fileKey;
+    private long offset;
+
+    /**
+     * Начало незавершённой строки из предыдущего чтения
+     */
+    private byte[] pending = new byte[1024];
+    private int pendingLength;
+
+    /**
+     * Байты файла непосредственно перед offset
+     */
+    private final byte[] mark = new byte[MARK_SIZE];
+    private int markLength;
+
+    /**
+     * @param path - путь к файлу
+     * @param fromEnd - пропустить уже записанное содержимое и читать только новые строки
+     */
+    TailReader(Path path, boolean fromEnd) throws IOException {
+        this.path = path;
+        if (open() && fromEnd) {
+            offset = channel.size();
+            markLength = (int) Math.min(MARK_SIZE, offset);
+            if (channel.read(ByteBuffer.wrap(mark, 0, markLength), offset - markLength) != markLength)
+                markLength = 0;
+        }
+    }
+
+    /**
+     * Передаёт обработчику все строки, дописанные с прошлого вызова
+     * @param action - обработчик строки
+     * @return - количество прочитанных строк
+     */
+    int poll(Consumer<String> action) throws IOException {
+        if (channel == null && !open())
+            return 0;
+
+        if (channel.size() < offset || !markMatches()) {
+            // Файл усечён (возможно, и дописан заново): читаем заново с начала
+            offset = 0;
+            pendingLength = 0;
+            markLength = 0;
+        }
+
+        int lines = drain(action);
+
+        Object currentKey = currentKey();
+        if (currentKey != null && !currentKey.equals(fileKey)) {
+            // Файл ротирован: старый дочитан, незавершённая строка в нём уже не продолжится
+            if (pendingLength > 0) {
+                emit(action, pending, 0, pendingLength);
+                pendingLength = 0;
+                lines++;
+            }
+            close();
+            if (open())
+                lines += drain(action);
+        }
+
+        return lines;
+    }
+
+    private int drain(Consumer<String> action) throws IOException {
+        int lines = 0;
+        int read;
+
+        while ((read = channel.read(buffer.clear(), offset)) > 0) {
+            offset += read;
+            byte[] bytes = buffer.array();
+            int lineStart = 0;
+
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] != '\n')
+                    continue;
+
+                if (pendingLength > 0) {
+                    append(bytes, lineStart, i - lineStart);
+                    emit(action, pending, 0, pendingLength);
+                    pendingLength = 0;
+                } else {
+                    emit(action, bytes, lineStart, i - lineStart);
+                }
+                lines++;
+                lineStart = i + 1;
+            }
+
+            append(bytes, lineStart, read - lineStart);
+            updateMark(bytes, read);
+        }
+
+        return lines;
+    }
+
+    /**
+     * Проверяет, что перед offset в файле те же байты, что были прочитаны
+     */
+    private boolean markMatches() throws IOException {
+        if (markLength == 0)
+            return true;
+
+        ByteBuffer current = buffer.clear().limit(markLength);
+        while (current.hasRemaining()) {
+            if (channel.read(current, offset - markLength + current.position()) < 0)
+                return false;
+        }
+        return Arrays.equals(buffer.array(), 0, markLength, mark, 0, markLength);
+    }
+
+    /**
+     * Запоминает последние байты, прочитанные в bytes[0, read)
+     */
+    private void updateMark(byte[] bytes, int read) {
+        if (read >= MARK_SIZE) {
+            System.arraycopy(bytes, read - MARK_SIZE, mark, 0, MARK_SIZE);
+            markLength = MARK_SIZE;
+            return;
+        }
+        int keep = Math.min(markLength, MARK_SIZE - read);
+        System.arraycopy(mark, markLength - keep, mark, 0, keep);
+        System.arraycopy(bytes, 0, mark, keep, read);
+        markLength = keep + read;
+    }
+
+    private void append(byte[] bytes, int from, int length) {
+        if (pendingLength + length > pending.length)
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        System.arraycopy(bytes, from, pending, pendingLength, length);
+        pendingLength += length;
+    }
+
+    private void emit(Consumer<String> action, byte[] bytes, int from, int length) {
+        if (length > 0 && bytes[from + length - 1] == '\r')
+            length--;
+        action.accept(new String(bytes, from, length, charset));
+    }
+
+    private boolean open() throws IOException {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException ex) {
+            // Во время ротации файла может временно не быть
+            return false;
+        }
+        fileKey = currentKey();
+        offset = 0;
+        markLength = 0;
+        return true;
+    }
+
+    private Object currentKey() throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ru.accesslogparser;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneOffset;
+
+/**
+ * Разбор времени в формате {@code dd/MMM/yyyy:HH:mm:ss Z} (например, 25/Sep/2022:06:25:04 +0300).
+ * Соседние строки лога почти всегда записаны в одну секунду, поэтому последний результат запоминается
+ * и возвращается без разбора, если текст совпал. Неверный текст не приводит к исключению, а возвращает null,
+ * чтобы повреждённые строки не замедляли разбор. Может использоваться из нескольких потоков
+ */
+class TimestampDecoder {
+    /**
+     * Длина текста времени: "25/Sep/2022:06:25:04 +0300"
+     */
+    static final int LENGTH = 26;
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    /**
+     * Наибольшее смещение часового пояса, допустимое в {@link ZoneOffset}: 18 часов
+     */
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+    /**
+     * Последний разобранный текст и результат
+     */
+    private volatile Cached last;
+
+    /**
+     * Разбирает время из фрагмента строки [start, end)
+     * @return - время или null, если текст не соответствует формату
+     */
+    LogTime decode(CharSequence text, int start, int end) {
+        Cached cached = last;
+        if (cached != null && end - start == LENGTH && LineTokenizer.regionMatches(text, start, cached.text, 0, LENGTH))
+            return cached.time;
+
+        LogTime time = parse(text, start, end);
+        if (time != null)
+            last = new Cached(copy(text, start, end), time);
+        return time;
+    }
+
+    /**
+     * Копирует текст времени (только ASCII символы) без обращения к кэшу строк {@link ByteLine}:
+     * время меняется каждую секунду и вытесняло бы из кэша повторяющиеся значения
+     */
+    private static String copy(CharSequence text, int start, int end) {
+        if (text instanceof String string)
+            return string.substring(start, end);
+
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = text.charAt(start + i);
+        return new String(chars);
+    }
+
+    private static LogTime parse(CharSequence text, int start, int end) {
+        if (end - start != LENGTH)
+            return null;
+
+        if (text.charAt(start + 2) != '/' || text.charAt(start + 6) != '/' || text.charAt(start + 11) != ':'
+                || text.charAt(start + 14) != ':' || text.charAt(start + 17) != ':' || text.charAt(start + 20) != ' ')
+            return null;
+
+        int day = digits(text, start, 2);
+        int month = month(text, start + 3);
+        int year = digits(text, start + 7, 4);
+        int hour = digits(text, start + 12, 2);
+        int minute = digits(text, start + 15, 2);
+        int second = digits(text, start + 18, 2);
+        int offsetHours = digits(text, start + 22, 2);
+        int offsetMinutes = digits(text, start + 24, 2);
+        char sign = text.charAt(start + 21);
+
+        // Отрицательное значение - не цифра в поле
+        if ((day | month | year | hour | minute | second | offsetHours | offsetMinutes) < 0)
+            return null;
+        if (sign != '+' && sign != '-')
+            return null;
+        int offsetSeconds = offsetHours * 3600 + offsetMinutes * 60;
+        if (offsetMinutes > 59 || offsetSeconds > MAX_OFFSET_SECONDS)
+            return null;
+
+        if (year < 1 || day < 1 || day > 31 || minute > 59 || second > 59)
+            return null;
+        // Как при разборе DateTimeFormatter в режиме SMART: 31 число в коротком месяце заменяется последним днём
+        day = Math.min(day, Month.of(month).length(Year.isLeap(year)));
+
+        LocalDateTime localTime;
+        if (hour == 24 && minute == 0 && second == 0) {
+            // 24:00:00 - начало следующего дня, как в DateTimeFormatter
+            localTime = LocalDateTime.of(year, month, day, 0, 0).plusDays(1);
+        } else if (hour < 24) {
+            localTime = LocalDateTime.of(year, month, day, hour, minute, second);
+        } else {
+            return null;
+        }
+        return new LogTime(localTime, ZoneOffset.ofTotalSeconds(sign == '-' ? -offsetSeconds : offsetSeconds));
+    }
+
+    /**
+     * @return - число из count цифр или -1, если встретилась не цифра
+     */
+    private static int digits(CharSequence text, int pos, int count) {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+                return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return - номер месяца от 1 до 12 или -1, если название неизвестно
+     */
+    private static int month(CharSequence text, int pos) {
+        for (int i = 0; i < MONTHS.length(); i += 3) {
+            if (LineTokenizer.regionMatches(text, pos, MONTHS, i, 3))
+                return i / 3 + 1;
+        }
+        return -1;
+    }
+
+    private static class Cached {
+        private final String text;
+        private final LogTime time;
+
+        private Cached(String text, LogTime time) {
+            this.text = text;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.accesslogparser;
+
+/**
+ * Самые частые ключи ({@link SpaceSaving}) с гистограммой значений для каждого отслеживаемого ключа.
+ * Гистограмма принадлежит ячейке ключа: создаётся при первом значении в ячейке и очищается, когда ключ вытесняется,
+ * поэтому новых объектов после заполнения ячеек не создаётся. Для ключа, вытесненного и вернувшегося в отчёт,
+ * гистограмма содержит только значения после возвращения. Не потокобезопасен
+ * @param <K> - тип ключа
+ */
+class TopHistograms<K> extends SpaceSaving<K> {
+    private final int precision;
+    private final LogLinearHistogram[] histograms;
+
+    /**
+     * @param capacity - наибольшее количество отслеживаемых ключей
+     * @param precision - точность гистограмм, см. {@link LogLinearHistogram#LogLinearHistogram(int)}
+     */
+    TopHistograms(int capacity, int precision) {
+        super(capacity);
+        this.precision = precision;
+        this.histograms = new LogLinearHistogram[capacity];
+    }
+
+    /**
+     * Увеличивает счётчик ключа на единицу и учитывает значение в его гистограмме
+     */
+    void record(K key, int value) {
+        histogram(add(key, 1)).record(value);
+    }
+
+    /**
+     * Гистограмма отслеживаемого ключа, полученного через {@link #top(int)}
+     */
+    LogLinearHistogram histogram(Counter<K> counter) {
+        return histogram(counter.getSlot());
+    }
+
+    /**
+     * Гистограмма ключа или null, если ключ не отслеживается
+     */
+    LogLinearHistogram histogram(K key) {
+        int slot = slotOf(key);
+        return (slot < 0) ? null : histogram(slot);
+    }
+
+    private LogLinearHistogram histogram(int slot) {
+        LogLinearHistogram histogram = histograms[slot];
+        if (histogram == null)
+            histograms[slot] = histogram = new LogLinearHistogram(precision);
+        return histogram;
+    }
+
+    @Override
+    void evicted(int slot) {
+        if (histograms[slot] != null)
+            histograms[slot].clear();
+    }
+
+    @Override
+    void merged(int slot, SpaceSaving<K> other, int otherSlot) {
+        LogLinearHistogram otherHistogram = ((TopHistograms<K>) other).histograms[otherSlot];
+        if (otherHistogram != null)
+            histogram(slot).merge(otherHistogram);
+    }
+
+    @Override
+    void clear() {
+        super.clear();
+        for (LogLinearHistogram histogram : histograms) {
+            if (histogram != null)
+                histogram.clear();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.accesslogparser;
+
+import java.util.function.Consumer;
+
+/**
+ * Статистика трафика: количество запросов и ошибок, объём и распределение размера ответа за время лога.
+ * Использует только время, код ответа и размер записи, поэтому при разборе в {@link LazyLogEntry}
+ * ip адрес, запрос, referer и UserAgent не разбираются.
+ * Экземпляр не потокобезопасен: при параллельном разборе каждый поток наполняет свой экземпляр,
+ * а результаты объединяются через {@link #merge(TrafficStatistics)}
+ */
+class TrafficStatistics implements Consumer<LogEntry> {
+    /**
+     * Точность гистограммы размера ответа, как у {@link Statistics}: ошибка перцентиля не больше 1/128
+     */
+    private static final int RESPONSE_SIZE_PRECISION = 7;
+
+    private long totalRequests;
+    private long totalTraffic;
+    /**
+     * Общее число ошибочных запросов (responseCode = 4хх, 5хх)
+     */
+    private long totalErrorRequests;
+    /**
+     * Минимальное и максимальное время в логе, секунды от эпохи
+     */
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private final LogLinearHistogram responseSizes = new LogLinearHistogram(RESPONSE_SIZE_PRECISION);
+
+    @Override
+    public void accept(LogEntry entry) {
+        int responseCode = entry.getResponseCode();
+        int responseSize = entry.getResponseSize();
+        long timestamp = entry.getTimestamp();
+
+        totalRequests += 1;
+        totalTraffic += responseSize;
+        responseSizes.record(responseSize);
+        if (responseCode >= 400 && responseCode < 600)
+            totalErrorRequests += 1;
+        if (minTime > timestamp)
+            minTime = timestamp;
+        if (maxTime < timestamp)
+            maxTime = timestamp;
+    }
+
+    /**
+     * Добавляет статистику, подсчитанную другим экземпляром
+     * @return - текущий экземпляр
+     */
+    TrafficStatistics merge(TrafficStatistics other) {
+        totalRequests += other.totalRequests;
+        totalTraffic += other.totalTraffic;
+        totalErrorRequests += other.totalErrorRequests;
+        minTime = Math.min(minTime, other.minTime);
+        maxTime = Math.max(maxTime, other.maxTime);
+        responseSizes.merge(other.responseSizes);
+        return this;
+    }
+
+    long getTotalRequests() {
+        return totalRequests;
+    }
+
+    long getTotalTraffic() {
+        return totalTraffic;
+    }
+
+    long getTotalErrorRequests() {
+        return totalErrorRequests;
+    }
+
+    /**
+     * Средний трафик за интервал времени
+     */
+    double getTrafficRate(Statistics.TimeIntervals interval) {
+        return totalTraffic / (getDurationSeconds() / interval.getSecondsCount());
+    }
+
+    /**
+     * Среднее количество ошибочных запросов за интервал времени
+     */
+    double getErrorRequestsRate(Statistics.TimeIntervals interval) {
+        return totalErrorRequests / (getDurationSeconds() / interval.getSecondsCount());
+    }
+
+    /**
+     * Размеры ответа, которые не превышают заданные доли запросов
+     * @param percentiles - перцентили от 0 до 100, например 99.9
+     */
+    long[] getResponseSizePercentiles(double... percentiles) {
+        long[] result = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++)
+            result[i] = responseSizes.getValueAtPercentile(percentiles[i]);
+        return result;
+    }
+
+    private long getDurationSeconds() {
+        return maxTime - minTime;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficStatistics {" +
+                "totalRequests=" + totalRequests +
+                ", totalTraffic=" + totalTraffic +
+                ", totalErrorRequests=" + totalErrorRequests +
+                ", minTime=" + minTime +
+                ", maxTime=" + maxTime +
+                '}';
+    }
+}
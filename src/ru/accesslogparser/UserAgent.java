@@ -2,45 +2,51 @@ package ru.accesslogparser;
 
 public class UserAgent {
     /**
-     * Наименование операционной системы
+     * Операционная система
      */
-    private final String os;
+    private final OS os;
     /**
-     * Наименование браузера
+     * Браузер
      */
-    private final String browser;
+    private final Browsers browser;
     /**
      * Признак поискового бота
      */
     private final boolean isBot;
 
     /**
-     * Типы операционных систем и regex для их поиска в теле UserAgent
+     * Типы операционных систем и слова для их поиска в теле UserAgent.
+     * Слово должно стоять отдельно (границы слова с обеих сторон).
+     * UNKNOWN всегда последний и не ищется
      */
-    private enum OS {
-          WINDOWS(".*\\bWINDOWS\\b.*")
-        , ANDROID(".*\\bANDROID\\b.*")
-        , IOS(".*\\b(IPHONE|IPAD)\\b.*")
-        , MACOS(".*\\bMAC OS\\b.*")
-        , LINUX(".*\\bLINUX\\b.*");
-
-        private final String token;
-
-        OS(String str) {
-            this.token = str;
+    enum OS {
+          WINDOWS("WINDOWS")
+        , ANDROID("ANDROID")
+        , IOS("IPHONE", "IPAD")
+        , MACOS("MAC OS")
+        , LINUX("LINUX")
+        , UNKNOWN;
+
+        private final String[] tokens;
+
+        OS(String... tokens) {
+            this.tokens = tokens;
         }
     }
 
     /**
-     * Типы браузеров и regex для их поиска в теле UserAgent
+     * Типы браузеров и префиксы для их поиска в теле UserAgent.
+     * Префикс должен начинаться с начала слова.
+     * UNKNOWN всегда последний и не ищется
      */
-    private enum Browsers {
-          CHROME(".*\\bCHROME/.*")
-        , FIREFOX(".*\\bFIREFOX/.*")
-        , EDGE(".*\\bEDG/.*")
-        , OPERA(".*\\bOPR/.*")
-        , SAFARI(".*\\bMOBILE/.*")
-        , IE(".*\\bIEMOBILE/.*")
+    enum Browsers {
+          CHROME("CHROME/")
+        , FIREFOX("FIREFOX/")
+        , EDGE("EDG/")
+        , OPERA("OPR/")
+        , SAFARI("MOBILE/")
+        , IE("IEMOBILE/")
+        , UNKNOWN(null)
         ;
 
         private final String token;
@@ -50,43 +56,96 @@ public class UserAgent {
         }
     }
 
+    private static final OS[] OS_VALUES = OS.values();
+    private static final Browsers[] BROWSER_VALUES = Browsers.values();
+    private static final String BOT_TOKEN = "BOT";
+
     /**
-     * Разбирает строку UserAgent лога
+     * Разбирает строку UserAgent лога за один проход без учёта регистра.
+     * При нескольких совпадениях выбирается ОС и браузер, объявленные в перечислении раньше
      * @param agent - строка с UserAgent
      */
     public UserAgent(String agent) {
-        agent = agent.toUpperCase();
-        String tmpBrowser = null;
+        int length = agent.length();
+        int browserIndex = Browsers.UNKNOWN.ordinal();
+        int osIndex = OS.UNKNOWN.ordinal();
+        boolean bot = false;
+
+        for (int i = 0; i < length; i++) {
+            if (i == 0 || !isWordChar(agent.charAt(i - 1))) {
+                // Начало слова: ищем только более приоритетные, чем уже найденные
+                for (int b = 0; b < browserIndex; b++) {
+                    if (matchesAt(agent, i, BROWSER_VALUES[b].token, false)) {
+                        browserIndex = b;
+                        break;
+                    }
+                }
+                for (int o = 0; o < osIndex; o++) {
+                    if (matchesAt(agent, i, OS_VALUES[o].tokens, true)) {
+                        osIndex = o;
+                        break;
+                    }
+                }
+            }
+
+            // Бот определяется по окончанию слова на BOT
+            if (!bot && matchesAt(agent, i, BOT_TOKEN, true))
+                bot = true;
 
-        // Определение браузера
-        for (Browsers value: Browsers.values()) {
-            if (agent.matches(value.token)) {
-                tmpBrowser = value.name();
+            if (bot && browserIndex == 0 && osIndex == 0)
                 break;
-            }
         }
-        this.browser = (tmpBrowser == null) ? "UNKNOWN" : tmpBrowser;
 
-        // Определение ОС
-        String tmpOs = null;
+        this.browser = BROWSER_VALUES[browserIndex];
+        this.os = OS_VALUES[osIndex];
+        this.isBot = bot;
+    }
 
-        for (OS value: OS.values()) {
-            if (agent.matches(value.token)) {
-                tmpOs = value.name();
-                break;
-            }
+    private static boolean matchesAt(String agent, int pos, String[] tokens, boolean wordEnd) {
+        for (String token : tokens) {
+            if (matchesAt(agent, pos, token, wordEnd))
+                return true;
         }
-        this.os = (tmpOs == null) ? "UNKNOWN" : tmpOs;
+        return false;
+    }
 
-        // Определение бота
-        this.isBot = agent.matches(".*BOT\\b.*");
+    /**
+     * Проверяет, что с позиции pos в строке записан token (без учёта регистра)
+     * @param wordEnd - после token должна быть граница слова
+     */
+    private static boolean matchesAt(String agent, int pos, String token, boolean wordEnd) {
+        int end = pos + token.length();
+        if (end > agent.length())
+            return false;
+
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.toUpperCase(agent.charAt(pos + i)) != token.charAt(i))
+                return false;
+        }
+
+        return !wordEnd || end == agent.length() || !isWordChar(agent.charAt(end));
+    }
+
+    /**
+     * Символ слова в смысле границы \b регулярных выражений
+     */
+    private static boolean isWordChar(char ch) {
+        return ch == '_' || Character.isLetterOrDigit(ch);
     }
 
     public String getOs() {
-        return os;
+        return os.name();
     }
 
     public String getBrowser() {
+        return browser.name();
+    }
+
+    OS getOsType() {
+        return os;
+    }
+
+    Browsers getBrowserType() {
         return browser;
     }
 
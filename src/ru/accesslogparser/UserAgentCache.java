@@ -0,0 +1,61 @@
+package ru.accesslogparser;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный кэш разобранных {@link UserAgent} по исходной строке.
+ * Может использоваться из нескольких потоков. При переполнении вытесняется запись, к которой давно не обращались
+ * (см. {@link ClockCache})
+ */
+public class UserAgentCache {
+    private final ClockCache<String, UserAgent> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity - максимальное количество хранимых строк UserAgent
+     */
+    public UserAgentCache(int capacity) {
+        this.cache = new ClockCache<>(capacity);
+    }
+
+    /**
+     * Возвращает разобранный UserAgent из кэша или разбирает строку и сохраняет результат
+     * @param agent - строка с UserAgent
+     */
+    public UserAgent get(String agent) {
+        UserAgent userAgent = cache.get(agent);
+        if (userAgent != null) {
+            hits.increment();
+            return userAgent;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        userAgent = new UserAgent(agent);
+        IngestMetrics.getDefault().recordClassify(System.nanoTime() - start);
+
+        return cache.put(agent, userAgent);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        return "UserAgentCache {" +
+                "size=" + cache.size() +
+                ", hits=" + hits.sum() +
+                ", misses=" + misses.sum() +
+                '}';
+    }
+}
@@ -0,0 +1,106 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BadLineReporterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void skipIgnoresLines() throws Exception {
+        try (BadLineReporter reporter = new BadLineReporter(BadLinePolicy.SKIP)) {
+            reporter.reject("broken", LogField.TIME, "Неверное время");
+            assertEquals(0, reporter.getCount());
+            assertEquals(Map.of(), reporter.getCountsByField());
+        }
+    }
+
+    @Test
+    void countGroupsLinesByField() throws Exception {
+        try (BadLineReporter reporter = new BadLineReporter(BadLinePolicy.COUNT)) {
+            reporter.reject("a", LogField.TIME, "");
+            reporter.reject("b", LogField.TIME, "");
+            reporter.reject("c", LogField.REFERER, "");
+            reporter.reject("d", null, "");
+
+            assertEquals(4, reporter.getCount());
+            assertEquals(Map.of("TIME", 2L, "REFERER", 1L, "UNKNOWN", 1L), reporter.getCountsByField());
+            assertEquals(0, reporter.getSampled());
+        }
+    }
+
+    @Test
+    void sampleNeedsFile() {
+        assertThrows(IllegalArgumentException.class, () -> new BadLineReporter(BadLinePolicy.SAMPLE));
+        assertThrows(IllegalArgumentException.class, () -> new BadLineReporter(directory.resolve("bad.txt"), 0));
+    }
+
+    @Test
+    void sampleWritesReasonAndLineOnClose() throws Exception {
+        Path file = directory.resolve("bad.txt");
+        BadLineReporter reporter = new BadLineReporter(file, 100);
+        reporter.reject("first line", LogField.TIME, "Неверное время");
+        reporter.reject(new StringBuilder("second line"), null, "Слишком длинная");
+        reporter.close();
+
+        assertEquals(List.of("Неверное время\tfirst line", "Слишком длинная\tsecond line"), Files.readAllLines(file));
+        assertEquals(2, reporter.getSampled());
+        assertEquals(0, reporter.getDropped());
+    }
+
+    @Test
+    void sampleIsRateLimited() throws Exception {
+        Path file = directory.resolve("bad.txt");
+        int maxPerSecond = 5;
+        BadLineReporter reporter = new BadLineReporter(file, maxPerSecond);
+        for (int i = 0; i < 1000; i++)
+            reporter.reject("line " + i, LogField.RESPONSE_CODE, "reason");
+        reporter.close();
+
+        // Строки могли прийтись на две секунды, но не больше
+        assertTrue(reporter.getSampled() >= 1 && reporter.getSampled() <= 2 * maxPerSecond, "sampled=" + reporter.getSampled());
+        assertEquals(1000, reporter.getSampled() + reporter.getDropped());
+        assertEquals(1000, reporter.getCount(), "Строки сверх частоты всё равно считаются");
+        assertEquals(reporter.getSampled(), Files.readAllLines(file).size(), "Очередь записана не полностью");
+    }
+
+    @Test
+    void concurrentRejectsAreAllCounted() throws Exception {
+        Path file = directory.resolve("bad.txt");
+        BadLineReporter reporter = new BadLineReporter(file, 1_000_000);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++)
+                    reporter.reject("line", LogField.IP_ADDR, "reason");
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        reporter.close();
+
+        assertEquals(40_000, reporter.getCount());
+        assertEquals(40_000, reporter.getSampled() + reporter.getDropped());
+        assertEquals(reporter.getSampled(), Files.readAllLines(file).size());
+    }
+
+    @Test
+    void parseErrorsHaveNoStackTrace() {
+        LogEntryCreateException ex = assertThrows(LogEntryCreateException.class, () -> new CombinedLogParser().parse("127.0.0.1 - - [bad]"));
+        assertEquals(LogField.TIME, ex.getField());
+        assertEquals(0, ex.getStackTrace().length);
+        assertNull(ex.getCause());
+    }
+}
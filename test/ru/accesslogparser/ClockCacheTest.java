@@ -0,0 +1,40 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ClockCacheTest {
+    @Test
+    void sizeStaysWithinCapacity() {
+        ClockCache<Integer, String> cache = new ClockCache<>(100);
+        for (int i = 0; i < 10_000; i++)
+            cache.put(i, Integer.toString(i));
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    void putKeepsExistingValue() {
+        ClockCache<String, String> cache = new ClockCache<>(4);
+        assertEquals("a", cache.put("key", "a"));
+        assertEquals("a", cache.put("key", "b"));
+        assertEquals("a", cache.get("key"));
+    }
+
+    @Test
+    void frequentlyReadKeysSurviveEviction() {
+        ClockCache<Integer, Integer> cache = new ClockCache<>(64);
+        for (int i = 0; i < 8; i++)
+            cache.put(-i - 1, i);
+
+        for (int i = 0; i < 10_000; i++) {
+            for (int hot = 0; hot < 8; hot++)
+                assertNotNull(cache.get(-hot - 1), "Часто используемый ключ вытеснен");
+            if (cache.get(i) == null)
+                cache.put(i, i);
+        }
+        assertNull(cache.get(0));
+    }
+}
@@ -0,0 +1,235 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Сверка {@link CombinedLogParser} с эталонным {@link RegexLogParser} на сгенерированных и искажённых строках.
+ * Строку, которую эталон разбирает полностью, оба разборщика должны превращать в одинаковые записи,
+ * а на ошибочной строке - сообщать об ошибке в одном и том же поле.
+ * Единственное намеренное отличие: эталон возвращает запись с пустыми полями, если полей в строке не хватает
+ * или referer записан без кавычек, а {@link CombinedLogParser} отклоняет такую строку с указанием поля
+ */
+class CombinedLogParserTest {
+    /**
+     * Токены строки так же, как их выделяет {@link RegexLogParser}
+     */
+    private static final Pattern TOKEN = Pattern.compile("([^ \"\\[]+)|(\\[(?<brackets>[^]]*)])|(\"(?<text>[^\"]*)\")");
+    private static final LogField[] FIELDS = LogField.values();
+
+    private static final String[] IPS = {"127.0.0.1", "10.0.12.255", "2001:db8::ff00:42:8329", "-", "host.example.com"};
+    private static final String[] TIMES = {"25/Sep/2022:06:25:04 +0300", "01/Jan/2000:00:00:00 +0000", "31/Dec/2023:23:59:59 -0830",
+            "29/Feb/2024:12:00:00 +1400"};
+    private static final String[] METHODS = {"GET", "POST", "HEAD", "DELETE", "OPTIONS", "FETCH", "get", ""};
+    private static final String[] PATHS = {"/", "/index.html HTTP/1.1", "/api/v1/items?id=42&x=[1] HTTP/2.0", "/путь/к/странице HTTP/1.0", "-"};
+    private static final String[] NUMBERS = {"200", "404", "0", "-", "+7", "-1", "2147483647", "2147483648", "-2147483648",
+            "99999999999999999999", "٣٠٤", "２００", "1e3", ""};
+    private static final String[] REFERERS = {"-", "https://example.com/page?a=b", "http://nova-news.ru/search/?rss=1", ""};
+    private static final String[] AGENTS = {"-", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36",
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0", "curl/8.0.1", ""};
+    /**
+     * Символы, которые вставляются при искажении строки: ограничители токенов, пробелы, цифры и не-ASCII символы
+     */
+    private static final String NOISE = "[]\" 0915-+:/٣é\t";
+
+    private final CombinedLogParser combined = new CombinedLogParser();
+    private final RegexLogParser regex = new RegexLogParser();
+
+    @Test
+    void generatedLinesParseLikeRegexParser() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20_000; i++)
+            assertSameResult(generate(random));
+    }
+
+    @Test
+    void fuzzedLinesParseLikeRegexParser() {
+        Random random = new Random(2);
+        for (int i = 0; i < 50_000; i++) {
+            String line = generate(random);
+            int mutations = 1 + random.nextInt(3);
+            for (int j = 0; j < mutations; j++)
+                line = mutate(line, random);
+            assertSameResult(line);
+        }
+    }
+
+    @Test
+    void edgeCasesParseLikeRegexParser() {
+        List<String> lines = new ArrayList<>(List.of(
+                "",
+                " ",
+                "127.0.0.1",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200 30 \"-\"",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200 30 \"-\" \"unterminated",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200 30 - \"agent\"",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 2147483648 30 \"-\" \"agent\"",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200 ٣٠ \"-\" \"agent\"",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200 3x \"-\" \"agent\"",
+                "127.0.0.1 - - [25/Sep/2022:25:25:04 +0300] \"GET / HTTP/1.1\" 200 30 \"-\" \"agent\"",
+                "127.0.0.1 - - [25/sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200 30 \"-\" \"agent\"",
+                "127.0.0.1 - - 25/Sep/2022:06:25:04 \"GET / HTTP/1.1\" 200 30 \"-\" \"agent\"",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] GET 200 30 \"-\" \"agent\"",
+                "[127.0.0.1] - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200 30 \"-\" \"agent\"",
+                "127.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.1\" 200 30 \"-\" \"agent\" extra tokens"));
+        for (String line : lines)
+            assertSameResult(line);
+    }
+
+    @Test
+    void lazyEntriesMatchEagerEntries() {
+        CombinedLogParser lazy = new CombinedLogParser(new UserAgentCache(4096), new ConcurrentFieldDictionary(), true);
+        Random random = new Random(3);
+        for (int i = 0; i < 20_000; i++) {
+            String generated = generate(random);
+            String line = random.nextBoolean() ? mutate(generated, random) : generated;
+
+            LogEntry expected;
+            try {
+                expected = combined.parse(line);
+            } catch (LogEntryCreateException ex) {
+                LogEntryCreateException error = assertThrows(LogEntryCreateException.class, () -> lazy.parse(line), line);
+                assertEquals(ex.getField(), error.getField(), line);
+                continue;
+            }
+            LogEntry actual = assertDoesNotThrow(() -> lazy.parse(line), line);
+            assertInstanceOf(LazyLogEntry.class, actual);
+            assertSameEntry(expected, actual, line);
+        }
+    }
+
+    @Test
+    void lazyParserRequiresConcurrentDictionary() {
+        FieldDictionary dictionary = new FieldDictionary() {
+            @Override
+            public String intern(String value) {
+                return value;
+            }
+
+            @Override
+            public int idOf(String value) {
+                return 0;
+            }
+
+            @Override
+            public String valueOf(int id) {
+                return null;
+            }
+
+            @Override
+            public int size() {
+                return 0;
+            }
+        };
+        assertThrows(IllegalArgumentException.class, () -> new CombinedLogParser(new UserAgentCache(16), dictionary, true));
+        new CombinedLogParser(new UserAgentCache(16), dictionary, false);
+    }
+
+    private void assertSameResult(String line) {
+        LogEntry expected = null;
+        LogField expectedError = null;
+        try {
+            expected = regex.parse(line);
+        } catch (LogEntryCreateException ex) {
+            expectedError = ex.getField();
+            assertNotNull(expectedError, "Эталон не указал поле ошибки: " + line);
+        }
+
+        // Поля проверяются по порядку, поэтому ошибка, которую пропускает эталон, сообщается, если она раньше его ошибки
+        LogField unchecked = uncheckedError(line);
+        if (unchecked != null && (expectedError == null || unchecked.compareTo(expectedError) < 0))
+            expectedError = unchecked;
+
+        LogEntry actual;
+        try {
+            actual = combined.parse(line);
+        } catch (LogEntryCreateException ex) {
+            if (expectedError == null)
+                fail("Строка не разобрана (" + ex.getMessage() + "), эталон: " + expected + ": " + line);
+            assertEquals(expectedError, ex.getField(), line);
+            return;
+        }
+
+        if (expectedError != null)
+            fail("Ожидалась ошибка в поле " + expectedError + ", разобрано: " + actual + ": " + line);
+        assertSameEntry(expected, actual, line);
+    }
+
+    private static void assertSameEntry(LogEntry expected, LogEntry actual, String line) {
+        assertEquals(expected.getIpAddr(), actual.getIpAddr(), line);
+        assertEquals(expected.getTime(), actual.getTime(), line);
+        assertEquals(expected.getTimestamp(), actual.getTimestamp(), line);
+        assertEquals(expected.getMethod(), actual.getMethod(), line);
+        assertEquals(expected.getPath(), actual.getPath(), line);
+        assertEquals(expected.getResponseCode(), actual.getResponseCode(), line);
+        assertEquals(expected.getResponseSize(), actual.getResponseSize(), line);
+        assertEquals(expected.getReferer(), actual.getReferer(), line);
+        assertEquals(expected.getUserAgent().toString(), actual.getUserAgent().toString(), line);
+        assertEquals(expected.getUserAgent().getOs(), actual.getUserAgent().getOs(), line);
+        assertEquals(expected.getUserAgent().getBrowser(), actual.getUserAgent().getBrowser(), line);
+        assertEquals(expected.getUserAgent().isBot(), actual.getUserAgent().isBot(), line);
+    }
+
+    /**
+     * Ошибка, которую эталон не обнаруживает: referer без кавычек или отсутствующее поле
+     * @return - поле с ошибкой или null
+     */
+    private static LogField uncheckedError(String line) {
+        Matcher matcher = TOKEN.matcher(line);
+        int count = 0;
+        while (matcher.find()) {
+            if (count++ == LogField.REFERER.ordinal() && matcher.group("text") == null)
+                return LogField.REFERER;
+        }
+        return (count < FIELDS.length) ? FIELDS[count] : null;
+    }
+
+    /**
+     * Строка в формате combined; числа с небольшой вероятностью берутся из набора неверных и граничных значений
+     */
+    private static String generate(Random random) {
+        String method = pick(METHODS, random);
+        String request = method.isEmpty() ? pick(PATHS, random) : method + " " + pick(PATHS, random);
+        return pick(IPS, random) + " - - [" + pick(TIMES, random) + "] \"" + request + "\" "
+                + number(random, 100 + random.nextInt(500)) + " " + number(random, random.nextInt(1_000_000))
+                + " \"" + pick(REFERERS, random) + "\" \"" + pick(AGENTS, random) + "\"";
+    }
+
+    private static String number(Random random, int valid) {
+        return (random.nextInt(4) == 0) ? pick(NUMBERS, random) : Integer.toString(valid);
+    }
+
+    /**
+     * Удаляет символ, вставляет символ из {@link #NOISE} или обрезает строку в случайном месте
+     */
+    private static String mutate(String line, Random random) {
+        if (line.isEmpty())
+            return line;
+
+        int pos = random.nextInt(line.length());
+        return switch (random.nextInt(3)) {
+            case 0 -> line.substring(0, pos) + line.substring(pos + 1);
+            case 1 -> line.substring(0, pos) + NOISE.charAt(random.nextInt(NOISE.length())) + line.substring(pos);
+            default -> line.substring(0, pos);
+        };
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,112 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestMetricsTest {
+    private static final String LINE = "10.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET %s HTTP/1.1\" %d 100 \"-\" \"-\"";
+
+    /**
+     * Строки лога: разобранные, отброшенная фильтром, с ошибкой в поле времени и слишком длинная
+     */
+    private static final List<String> LINES = List.of(
+            String.format(LINE, "/ok", 200),
+            String.format(LINE, "/страница", 200),
+            String.format(LINE, "/missing", 404),
+            "10.0.0.1 - - [bad time] \"GET / HTTP/1.1\" 200 100 \"-\" \"-\"",
+            String.format(LINE, "/" + "x".repeat(2000), 200),
+            String.format(LINE, "/last", 204));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void countersMatchKnownInput() throws Exception {
+        Path log = directory.resolve("access.log");
+        // Переводы строк LF и CRLF не входят в объём
+        StringBuilder text = new StringBuilder();
+        long bytes = 0;
+        for (int i = 0; i < LINES.size(); i++) {
+            text.append(LINES.get(i)).append(i % 2 == 0 ? "\n" : "\r\n");
+            bytes += LINES.get(i).getBytes(StandardCharsets.UTF_8).length;
+        }
+        Files.writeString(log, text, StandardCharsets.UTF_8);
+
+        // Строки, байты и String (ленивый разбор) читаются по-разному, но считаются одинаково
+        assertCounters(bytes, file -> read(file, new CombinedLogParser(), LogFile::read));
+        assertCounters(bytes, file -> read(file, new CombinedLogParser(), logFile -> logFile.readMapped(2)));
+        assertCounters(bytes, file -> read(file, new CombinedLogParser(new UserAgentCache(16), null, true), logFile -> logFile.readMapped(2)));
+    }
+
+    @Test
+    void resetClearsCounters() {
+        IngestMetrics metrics = new IngestMetrics();
+        metrics.lineRead(100);
+        metrics.lineRejected();
+        metrics.parseFailed(LogField.TIME);
+        metrics.recordSample(10, 20);
+        metrics.recordClassify(30);
+        metrics.reset();
+
+        assertEquals(0, metrics.getLinesRead());
+        assertEquals(0, metrics.getLinesRejected());
+        assertEquals(0, metrics.getBytesRead());
+        assertEquals(0, metrics.getParseFailures());
+        assertEquals(Map.of(), metrics.getParseFailuresByField());
+        assertEquals(0, metrics.getParseNanos());
+        assertEquals(0, metrics.getClassifications());
+        assertEquals(0, metrics.getClassifyNanos());
+    }
+
+    @Test
+    void sampledTimeIsScaledToParsedLines() {
+        IngestMetrics metrics = new IngestMetrics();
+        for (int i = 0; i < 100; i++)
+            metrics.lineRead(10);
+        metrics.lineRejected();
+        metrics.parseFailed(null);
+        metrics.recordSample(1000, 500);
+        metrics.recordSample(3000, 1500);
+
+        // 98 разобранных строк по 2000 нс разбора и 1000 нс подсчёта в среднем
+        assertEquals(196_000, metrics.getParseNanos());
+        assertEquals(98_000, metrics.getAggregateNanos());
+        assertEquals(Map.of("UNKNOWN", 1L), metrics.getParseFailuresByField());
+    }
+
+    private void assertCounters(long bytes, ReadMethod method) throws Exception {
+        IngestMetrics metrics = method.read(directory.resolve("access.log"));
+
+        assertEquals(6, metrics.getLinesRead());
+        assertEquals(bytes, metrics.getBytesRead());
+        assertEquals(1, metrics.getLinesRejected(), "Отброшена фильтром");
+        assertEquals(2, metrics.getParseFailures());
+        assertEquals(Map.of("TIME", 1L, "UNKNOWN", 1L), metrics.getParseFailuresByField());
+        assertTrue(metrics.getParseNanos() >= 0);
+    }
+
+    private static IngestMetrics read(Path file, LogParser parser, LogFileReader reader) throws Exception {
+        IngestMetrics metrics = new IngestMetrics();
+        LogFile logFile = new LogFile(file.toFile(), new MaxLengthCheck(1024), LogFilters.status(200, 299), parser, metrics,
+                new BadLineReporter(BadLinePolicy.COUNT));
+        reader.read(logFile);
+        return metrics;
+    }
+
+    private interface ReadMethod {
+        IngestMetrics read(Path file) throws Exception;
+    }
+
+    private interface LogFileReader {
+        void read(LogFile logFile) throws Exception;
+    }
+}
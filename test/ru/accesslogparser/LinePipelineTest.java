@@ -0,0 +1,39 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class LinePipelineTest {
+    private static final String LINES = "line\n".repeat(10_000);
+
+    @Test
+    void processesAllLines() throws Exception {
+        LinePipeline pipeline = new LinePipeline(4, 16, 2, Thread::new);
+        List<AtomicLong> partials = pipeline.run(new BufferedReader(new StringReader(LINES)), AtomicLong::new,
+                (count, line) -> count.incrementAndGet());
+        assertEquals(10_000, partials.stream().mapToLong(AtomicLong::get).sum());
+    }
+
+    @Test
+    void interruptedWorkerFailsTheRun() {
+        LinePipeline pipeline = new LinePipeline(1, 16, 1, Thread::new);
+        // Единственный поток обработки прерывается после первой пачки: чтение не должно ждать его вечно
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(InterruptedIOException.class, () -> pipeline.run(new BufferedReader(new StringReader(LINES)), AtomicLong::new,
+                    (count, line) -> {
+                        if (count.incrementAndGet() == 16)
+                            Thread.currentThread().interrupt();
+                    }));
+        });
+    }
+}
@@ -0,0 +1,100 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogBatchTest {
+    private static final String LINE = "10.0.0.%d - - [25/Sep/2022:06:%02d:04 +0300] \"GET /p%d HTTP/1.1\" %d %d \"-\" \"Mozilla/5.0 (Windows NT 10.0) Firefox/105.0\"";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void plainAndGzipFilesAreAllCounted() throws Exception {
+        List<Path> files = new ArrayList<>();
+        long traffic = 0;
+        for (int f = 0; f < 5; f++) {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                lines.add(String.format(LINE, i % 200, f, i, i % 10 == 0 ? 500 : 200, f * 1000 + i));
+                traffic += f * 1000 + i;
+            }
+            lines.add("broken line");
+            Path file = directory.resolve("access.log." + f + (f % 2 == 0 ? ".gz" : ""));
+            write(file, String.join("\n", lines) + "\n");
+            files.add(file);
+        }
+
+        for (boolean lazy : new boolean[] {false, true}) {
+            BadLineReporter badLines = new BadLineReporter(BadLinePolicy.COUNT);
+            // Файлов больше, чем потоков и мест в обработке: накопители объединяются по мере готовности
+            TrafficStatistics result = new LogBatch(files, null, null, badLines, lazy)
+                    .read(2, 3, TrafficStatistics::new, TrafficStatistics::merge);
+
+            assertEquals(5000, result.getTotalRequests(), "lazy=" + lazy);
+            assertEquals(traffic, result.getTotalTraffic(), "lazy=" + lazy);
+            assertEquals(500, result.getTotalErrorRequests(), "lazy=" + lazy);
+            assertEquals(5, badLines.getCount(), "lazy=" + lazy);
+        }
+    }
+
+    @Test
+    void filterAndCheckApplyToEveryFile() throws Exception {
+        Path plain = directory.resolve("access.log");
+        Path gzip = directory.resolve("access.log.1.gz");
+        String lines = String.format(LINE, 1, 0, 1, 200, 10) + "\n" + String.format(LINE, 2, 0, 2, 404, 20) + "\n"
+                + String.format(LINE, 3, 0, 3, 200, 30).replace("/p3", "/" + "x".repeat(2000)) + "\n";
+        write(plain, lines);
+        write(gzip, lines);
+
+        BadLineReporter badLines = new BadLineReporter(BadLinePolicy.COUNT);
+        TrafficStatistics result = new LogBatch(List.of(plain, gzip), new MaxLengthCheck(1024), LogFilters.status(200, 299), badLines, false)
+                .read(2, 2, TrafficStatistics::new, TrafficStatistics::merge);
+
+        assertEquals(2, result.getTotalRequests());
+        assertEquals(20, result.getTotalTraffic());
+        assertEquals(2, badLines.getCount(), "Слишком длинные строки");
+    }
+
+    @Test
+    void readErrorFailsTheBatch() throws Exception {
+        Path good = directory.resolve("access.log");
+        Path corrupt = directory.resolve("access.log.1.gz");
+        write(good, String.format(LINE, 1, 0, 1, 200, 10) + "\n");
+        Files.writeString(corrupt, "not a gzip stream");
+
+        LogBatch batch = new LogBatch(List.of(good, corrupt), null, null, new BadLineReporter(BadLinePolicy.COUNT), false);
+        IOException ex = assertThrows(IOException.class, () -> batch.read(2, 2, TrafficStatistics::new, TrafficStatistics::merge));
+        assertTrue(ex.getMessage().contains(corrupt.toString()), ex.getMessage());
+    }
+
+    @Test
+    void resolveFindsFilesByMaskAndSkipsSnapshots() throws Exception {
+        for (String name : List.of("access.log", "access.log.1", "access.log.2.gz", "error.log", "access.log" + LogSnapshot.EXTENSION))
+            Files.writeString(directory.resolve(name), "");
+
+        assertEquals(List.of(directory.resolve("access.log"), directory.resolve("access.log.1"), directory.resolve("access.log.2.gz")),
+                LogBatch.resolve(directory.resolve("access.log*").toString()));
+        assertEquals(4, LogBatch.resolve(directory.toString()).size());
+    }
+
+    private static void write(Path file, String text) throws IOException {
+        try (OutputStream out = file.toString().endsWith(".gz")
+                ? new GZIPOutputStream(Files.newOutputStream(file)) : Files.newOutputStream(file)) {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogFileTest {
+    private static final String LINE = "10.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET %s HTTP/1.1\" %d 100 \"-\" \"-\"";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tooLongLinesAreBadLinesNotFiltered() throws Exception {
+        Path log = directory.resolve("access.log");
+        Files.write(log, List.of(
+                String.format(LINE, "/ok", 200),
+                String.format(LINE, "/missing", 404),
+                String.format(LINE, "/" + "x".repeat(2000), 200),
+                "broken"));
+
+        IngestMetrics metrics = new IngestMetrics();
+        BadLineReporter badLines = new BadLineReporter(BadLinePolicy.COUNT);
+        List<LogEntry> entries = new ArrayList<>();
+        new LogFile(log.toFile(), new MaxLengthCheck(1024), LogFilters.status(200, 299), new CombinedLogParser(), metrics, badLines)
+                .read(entries::add);
+
+        assertEquals(1, entries.size());
+        assertEquals(1, metrics.getLinesRejected(), "Отброшено фильтром");
+        assertEquals(2, badLines.getCount());
+        assertEquals(1, badLines.getCountsByField().get("UNKNOWN"));
+        assertEquals(2, badLines.getCountsByField().size(), "Ошибка разбора учитывается по своему полю");
+    }
+
+    @Test
+    void plainCheckIsBadLineFilterIsNot() throws Exception {
+        Path log = directory.resolve("access.log");
+        Files.write(log, List.of(String.format(LINE, "/" + "x".repeat(2000), 200)));
+        File file = log.toFile();
+
+        IngestMetrics metrics = new IngestMetrics();
+        BadLineReporter badLines = new BadLineReporter(BadLinePolicy.COUNT);
+        new LogFile(file, new MaxLengthCheck(1024), new CombinedLogParser(), metrics, badLines).read(entry -> { });
+        assertEquals(0, metrics.getLinesRejected());
+        assertEquals(1, badLines.getCount());
+
+        new LogFile(file, LogFilters.of(new MaxLengthCheck(1024)), new CombinedLogParser(), metrics, badLines).read(entry -> { });
+        assertEquals(1, metrics.getLinesRejected());
+        assertEquals(1, badLines.getCount());
+    }
+
+    @Test
+    void mappedBytesGiveSameEntriesAsStrings() throws Exception {
+        Path log = directory.resolve("access.log");
+        Files.write(log, mixedLog());
+        File file = log.toFile();
+
+        BadLineReporter expectedBadLines = new BadLineReporter(BadLinePolicy.COUNT);
+        LogFile expected = new LogFile(file, null, new CombinedLogParser(), new IngestMetrics(), expectedBadLines);
+        expected.read();
+        assertTrue(expected.getEntries().size() > 1000);
+        assertTrue(expectedBadLines.getCount() > 0);
+
+        // Разное число потоков делит файл на части в разных местах, в том числе внутри CRLF и длинной строки
+        for (int threads : new int[] {1, 2, 3, 7, 16, 61}) {
+            BadLineReporter badLines = new BadLineReporter(BadLinePolicy.COUNT);
+            LogFile mapped = new LogFile(file, null, new CombinedLogParser(), new IngestMetrics(), badLines);
+            mapped.readMapped(threads);
+
+            assertEquals(describe(expected.getEntries()), describe(mapped.getEntries()), "threads=" + threads);
+            assertEquals(expectedBadLines.getCountsByField(), badLines.getCountsByField(), "threads=" + threads);
+        }
+    }
+
+    /**
+     * Лог с концами строк LF, CRLF и CR, пустыми и ошибочными строками, не-ASCII байтами,
+     * строкой длиннее окна разбора и последней строкой без перевода строки
+     */
+    private static byte[] mixedLog() {
+        Random random = new Random(42);
+        String[] endings = {"\n", "\n", "\r\n", "\r"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < 3000; i++) {
+            String line = switch (random.nextInt(20)) {
+                case 0 -> "";
+                case 1 -> "broken line " + i;
+                case 2 -> "10.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET /bad HTTP/1.1\" 2x0 100 \"-\" \"-\"";
+                // Не-ASCII байты в пути и UserAgent разбираются по байтам
+                case 3 -> "10.0.0.2 - - [25/Sep/2022:06:25:05 +0300] \"GET /страница HTTP/1.1\" 200 7 \"-\" \"Агент/1.0\"";
+                // Не-ASCII цифры: разбор по байтам не справляется и строка разбирается как String
+                case 4 -> "10.0.0.3 - - [25/Sep/2022:06:25:06 +0300] \"GET /digits HTTP/1.1\" 200 \u0661\u0660\u0660 \"-\" \"-\"";
+                case 5 -> i % 7 == 0 ? String.format(LINE, "/" + "y".repeat(150_000), 200) : String.format(LINE, "/p" + i, 301);
+                default -> String.format(LINE, "/p" + random.nextInt(100), random.nextBoolean() ? 200 : 404);
+            };
+            out.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+            out.writeBytes(endings[random.nextInt(endings.length)].getBytes(StandardCharsets.US_ASCII));
+        }
+        out.writeBytes(String.format(LINE, "/last", 200).getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static List<String> describe(List<LogEntry> entries) {
+        List<String> result = new ArrayList<>(entries.size());
+        for (LogEntry entry : entries)
+            result.add(entry.getTimestamp() + " " + entry);
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogSnapshotTest {
+    private static final String LINE = "%d.0.0.1 - - [25/Sep/2022:06:25:%02d +0300] \"GET /page/%d HTTP/1.1\" 200 %d \"https://example.com/\" "
+            + "\"Mozilla/5.0 (Windows NT 10.0; Win64; x64) Chrome/120.0\"";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWhatWasWritten() throws Exception {
+        File source = createLog();
+        Path target = directory.resolve("access.log" + LogSnapshot.EXTENSION);
+        LogColumns columns = parse(source);
+        LogSnapshot.write(columns, source.length(), source.lastModified(), target);
+
+        LogColumns loaded = LogSnapshot.read(source, target);
+        assertNotNull(loaded);
+        assertEquals(columns.size(), loaded.size());
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count(), "Временный файл снимка не удалён");
+        }
+    }
+
+    @Test
+    void responseCodesKeepTheirFullRange() throws Exception {
+        int[] codes = {200, 32767, 32768, 65535, 99999, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        StringBuilder text = new StringBuilder();
+        for (int code : codes)
+            text.append(LINE.replace(" 200 ", " " + code + " ").formatted(1, 0, 1, 100)).append('\n');
+        Path log = directory.resolve("access.log");
+        Files.writeString(log, text);
+        File source = log.toFile();
+        Path target = directory.resolve("access.log" + LogSnapshot.EXTENSION);
+        LogSnapshot.write(parse(source), source.length(), source.lastModified(), target);
+
+        LogColumns.Cursor row = LogSnapshot.read(source, target).cursor();
+        for (int code : codes) {
+            assertTrue(row.next());
+            assertEquals(code, row.getResponseCode());
+        }
+    }
+
+    @Test
+    void truncatedSnapshotIsStale() throws Exception {
+        File source = createLog();
+        Path target = directory.resolve("access.log" + LogSnapshot.EXTENSION);
+        LogSnapshot.write(parse(source), source.length(), source.lastModified(), target);
+        byte[] bytes = Files.readAllBytes(target);
+
+        for (int length = 0; length < bytes.length; length += 7) {
+            Files.write(target, Arrays.copyOf(bytes, length));
+            assertNull(LogSnapshot.read(source, target), "Обрезанный до " + length + " байт снимок загружен");
+        }
+    }
+
+    @Test
+    void corruptedSnapshotIsStaleOrValid() throws Exception {
+        File source = createLog();
+        Path target = directory.resolve("access.log" + LogSnapshot.EXTENSION);
+        LogSnapshot.write(parse(source), source.length(), source.lastModified(), target);
+        byte[] bytes = Files.readAllBytes(target);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            byte[] corrupted = bytes.clone();
+            // Заголовок с размером и временем исходного файла не портится: иначе снимок просто устаревший
+            int position = 24 + random.nextInt(bytes.length - 24);
+            corrupted[position] = (byte) random.nextInt(256);
+            Files.write(target, corrupted);
+
+            LogColumns loaded = LogSnapshot.read(source, target);
+            if (loaded != null)
+                new Statistics().addColumns(loaded);
+        }
+    }
+
+    private File createLog() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            text.append(String.format(LINE, i % 7, i % 60, i % 13, i * 31)).append('\n');
+        Path log = directory.resolve("access.log");
+        Files.writeString(log, text);
+        return log.toFile();
+    }
+
+    private static LogColumns parse(File source) throws Exception {
+        LogColumns columns = new LogColumns();
+        for (String line : Files.readAllLines(source.toPath()))
+            columns.accept(new LogEntry(line));
+        return columns;
+    }
+}
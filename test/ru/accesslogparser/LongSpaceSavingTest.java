@@ -0,0 +1,97 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongSpaceSavingTest {
+    @Test
+    void sameCountersAsSpaceSaving() {
+        Random random = new Random(8);
+        for (int round = 0; round < 200; round++) {
+            int capacity = 1 + random.nextInt(20);
+            int parts = 1 + random.nextInt(6);
+            List<LongSpaceSaving> summaries = new ArrayList<>();
+            List<SpaceSaving<Long>> expected = new ArrayList<>();
+            for (int i = 0; i < parts; i++) {
+                summaries.add(new LongSpaceSaving(capacity));
+                expected.add(new SpaceSaving<>(capacity));
+            }
+
+            int events = random.nextInt(3000);
+            long second = 1_664_000_000L;
+            for (int i = 0; i < events; i++) {
+                // Секунды в основном идут подряд, иногда с возвратом назад
+                second += random.nextInt(4) == 0 ? 1 : 0;
+                long key = random.nextInt(10) == 0 ? second - random.nextInt(100) : second;
+                long increment = 1 + random.nextInt(3);
+                int part = random.nextInt(parts);
+                summaries.get(part).add(key, increment);
+                expected.get(part).add(key, increment);
+            }
+
+            LongSpaceSaving merged = summaries.get(0);
+            SpaceSaving<Long> expectedMerged = expected.get(0);
+            for (int i = 1; i < parts; i++) {
+                if (random.nextBoolean()) {
+                    merged = merged.merge(summaries.get(i));
+                    expectedMerged = expectedMerged.merge(expected.get(i));
+                } else {
+                    merged = summaries.get(i).merge(merged);
+                    expectedMerged = expected.get(i).merge(expectedMerged);
+                }
+            }
+
+            assertEquals(counters(expectedMerged), counters(merged), "round=" + round);
+            for (boolean guaranteed : new boolean[] {false, true})
+                assertEquals(peaks(expectedMerged, guaranteed), peaks(merged, guaranteed), "round=" + round);
+        }
+    }
+
+    @Test
+    void clearForgetsKeys() {
+        LongSpaceSaving summary = new LongSpaceSaving(2);
+        summary.add(1, 5);
+        summary.add(2, 1);
+        summary.add(3, 1);
+        summary.clear();
+        summary.add(3, 1);
+
+        assertEquals(1, summary.size());
+        assertEquals(Map.of(3L, List.of(1L, 0L)), counters(summary));
+        assertThrows(IllegalArgumentException.class, () -> new LongSpaceSaving(0));
+    }
+
+    private static Map<Long, List<Long>> counters(LongSpaceSaving summary) {
+        Map<Long, List<Long>> result = new HashMap<>();
+        summary.forEach((key, count, error) -> result.put(key, List.of(count, error)));
+        return result;
+    }
+
+    private static Map<Long, List<Long>> counters(SpaceSaving<Long> summary) {
+        Map<Long, List<Long>> result = new HashMap<>();
+        for (SpaceSaving.Counter<Long> counter : summary.top(summary.getCapacity()))
+            result.put(counter.getKey(), List.of(counter.getCount(), counter.getError()));
+        return result;
+    }
+
+    private static Map<Long, Long> peaks(LongSpaceSaving summary, boolean guaranteed) {
+        Map<Long, Long> result = new HashMap<>();
+        summary.peaks(guaranteed, result::put);
+        return result;
+    }
+
+    private static Map<Long, Long> peaks(SpaceSaving<Long> summary, boolean guaranteed) {
+        Map<Long, Long> result = new HashMap<>();
+        for (SpaceSaving.Counter<Long> counter : summary.peaks(guaranteed))
+            result.put(counter.getKey(), guaranteed ? counter.getCount() - counter.getError() : counter.getCount());
+        return result;
+    }
+}
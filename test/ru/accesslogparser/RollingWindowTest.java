@@ -0,0 +1,39 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollingWindowTest {
+    private static final long START = 1_664_000_000L;
+
+    @Test
+    void periodEndsAtCurrentTime() {
+        RollingWindow window = new RollingWindow(3600, 1);
+        for (int i = 0; i < 120; i++)
+            window.add(START + i, (i % 10 == 0) ? 500 : 200, 100);
+
+        RollingWindow.Totals totals = window.getLast(Duration.ofMinutes(1), START + 119);
+        assertEquals(60, totals.getRequests());
+        assertEquals(6, totals.getErrors());
+        assertEquals(6000, totals.getTraffic());
+
+        // Трафик остановился: интервалы выходят из периода без новых записей
+        assertEquals(30, window.getLast(Duration.ofMinutes(1), START + 149).getRequests());
+        assertEquals(0, window.getLast(Duration.ofMinutes(1), START + 179).getRequests());
+        assertEquals(120, window.getLast(Duration.ofMinutes(60), START + 179).getRequests());
+        assertEquals(0, window.getLast(Duration.ofMinutes(60), START + 2 * 3600).getRequests());
+        // Без текущего времени период заканчивается самой поздней записью лога
+        assertEquals(60, window.getLast(Duration.ofMinutes(1)).getRequests());
+    }
+
+    @Test
+    void futureEntriesAnchorThePeriod() {
+        RollingWindow window = new RollingWindow(60, 1);
+        window.add(START + 100, 200, 1);
+        // Часы машины отстают от лога: период заканчивается самой поздней записью
+        assertEquals(1, window.getLast(Duration.ofMinutes(1), START).getRequests());
+    }
+}
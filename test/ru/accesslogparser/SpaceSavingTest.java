@@ -0,0 +1,75 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+    @Test
+    void mergeAccountsForKeysEvictedByOther() {
+        SpaceSaving<String> first = new SpaceSaving<>(2);
+        for (int i = 0; i < 3; i++)
+            first.add("A", 1);
+        SpaceSaving<String> second = new SpaceSaving<>(2);
+        second.add("A", 1);
+        second.add("B", 1);
+        second.add("C", 1);
+
+        SpaceSaving.Counter<String> a = first.merge(second).top(2).stream()
+                .filter(counter -> counter.getKey().equals("A")).findFirst().orElseThrow();
+        assertTrue(a.getCount() >= 4, "count=" + a.getCount());
+        assertTrue(a.getCount() - a.getError() <= 4, "count=" + a.getCount() + " error=" + a.getError());
+    }
+
+    @Test
+    void mergedSummaryKeepsBounds() {
+        Random random = new Random(4);
+        for (int round = 0; round < 200; round++) {
+            int capacity = 1 + random.nextInt(20);
+            int parts = 1 + random.nextInt(6);
+            List<SpaceSaving<Integer>> summaries = new ArrayList<>();
+            for (int i = 0; i < parts; i++)
+                summaries.add(new SpaceSaving<>(capacity));
+
+            Map<Integer, Long> exact = new HashMap<>();
+            long total = 0;
+            int events = random.nextInt(3000);
+            for (int i = 0; i < events; i++) {
+                // Распределение с тяжёлым хвостом: несколько частых ключей и много редких
+                int key = (int) Math.floor(Math.pow(random.nextDouble(), 3) * 200);
+                long increment = 1 + random.nextInt(3);
+                summaries.get(random.nextInt(parts)).add(key, increment);
+                exact.merge(key, increment, Long::sum);
+                total += increment;
+            }
+
+            SpaceSaving<Integer> merged = summaries.get(0);
+            for (int i = 1; i < parts; i++)
+                merged = (random.nextBoolean()) ? merged.merge(summaries.get(i)) : summaries.get(i).merge(merged);
+
+            Set<Integer> tracked = new HashSet<>();
+            Set<Integer> slots = new HashSet<>();
+            for (SpaceSaving.Counter<Integer> counter : merged.top(capacity)) {
+                long actual = exact.getOrDefault(counter.getKey(), 0L);
+                assertTrue(counter.getCount() >= actual, "Счётчик занижен: " + counter.getKey());
+                assertTrue(counter.getCount() - counter.getError() <= actual, "Погрешность занижена: " + counter.getKey());
+                assertTrue(counter.getSlot() >= 0 && counter.getSlot() < capacity && slots.add(counter.getSlot()), "Неверная ячейка");
+                tracked.add(counter.getKey());
+            }
+            assertEquals(Math.min(capacity, exact.size()), merged.size());
+            for (Map.Entry<Integer, Long> entry : exact.entrySet()) {
+                if (entry.getValue() > total / capacity)
+                    assertTrue(tracked.contains(entry.getKey()), "Частый ключ не отслеживается: " + entry.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatisticsTest {
+    private static final String LINE = "%s - - [25/Sep/2022:%02d:%02d:%02d +0300] \"GET %s HTTP/1.1\" %d %d \"%s\" \"%s\"";
+    private static final String[] AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:121.0) Gecko/20100101 Firefox/121.0",
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+            "-"};
+    private static final int[] CODES = {200, 200, 200, 301, 404, 500};
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Память приближённой статистики не растёт с количеством различных путей, referer и ip адресов
+     */
+    @Test
+    void approximateStatisticsRetainedSizeIsBounded() throws Exception {
+        CombinedLogParser parser = new CombinedLogParser();
+        Random random = new Random(6);
+        // Разборщик и кэши заполняются до замера
+        for (int i = 0; i < 10_000; i++)
+            parser.parse(line(random, i));
+
+        long before = usedHeap();
+        Statistics stat = new Statistics(0.01, 10_000);
+        for (int i = 0; i < 200_000; i++)
+            stat.addEntry(parser.parse(line(random, i)));
+        long retained = usedHeap() - before;
+
+        assertEquals(200_000, stat.getTotalRequests());
+        assertTrue(retained < 6 << 20, "Статистика занимает " + (retained >> 10) + " КБ");
+    }
+
+    @Test
+    void reportCapacityIsSeparateFromHeavyHitters() throws Exception {
+        CombinedLogParser parser = new CombinedLogParser();
+        Random random = new Random(7);
+        Statistics stat = new Statistics(0.01, 10_000, 50);
+        for (int i = 0; i < 20_000; i++)
+            stat.addEntry(parser.parse(line(random, i)));
+
+        assertEquals(50, stat.getTopPaths(Integer.MAX_VALUE).size());
+        assertEquals(50, stat.getTopNotFoundReferers(Integer.MAX_VALUE).size());
+        assertEquals(50, stat.getTopIpsByTraffic(Integer.MAX_VALUE).size());
+    }
+
+    /**
+     * Частичные статистики по частям лога после объединения совпадают со статистикой, собранной одним потоком.
+     * Ключей меньше ёмкости топ-отчётов и секунд/ip приближённого режима, поэтому объединение ничего не вытесняет
+     */
+    @Test
+    void mergedPartialsEqualSingleRun() throws Exception {
+        List<LogEntry> entries = entries(new Random(9), 20_000, StatisticsTest::boundedLine);
+        Random random = new Random(10);
+
+        for (Supplier<Statistics> factory : List.<Supplier<Statistics>>of(Statistics::new, () -> new Statistics(0.01, 10_000))) {
+            Map<String, Object> expected = report(feed(factory.get(), entries), true);
+            for (int round = 0; round < 20; round++)
+                assertEquals(expected, report(merged(entries, factory, random), true), "round=" + round);
+        }
+    }
+
+    /**
+     * Части файла, разобранные параллельно в свои статистики, дают тот же отчёт, что и последовательное чтение
+     */
+    @Test
+    void mappedChunksEqualSequentialRead() throws Exception {
+        Random random = new Random(11);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++)
+            lines.add(boundedLine(random, i));
+        Path log = directory.resolve("access.log");
+        Files.write(log, lines);
+
+        for (Supplier<Statistics> factory : List.<Supplier<Statistics>>of(Statistics::new, () -> new Statistics(0.01, 10_000))) {
+            Statistics expected = factory.get();
+            new LogFile(log.toFile(), null).read(expected);
+            for (int threads : new int[] {2, 5, 16})
+                assertEquals(report(expected, true), report(new LogFile(log.toFile(), null).readMapped(threads, factory, Statistics::merge), true),
+                        "threads=" + threads);
+        }
+    }
+
+    /**
+     * При вытеснениях объединённые топ-отчёты приближённые, но сохраняют гарантии Space-Saving,
+     * а скетчи, счётчики и гистограммы объединяются без потерь
+     */
+    @Test
+    void mergedApproximatePartialsKeepBounds() throws Exception {
+        List<LogEntry> entries = entries(new Random(12), 50_000, StatisticsTest::line);
+        Statistics exact = feed(new Statistics(100_000), entries);
+        Supplier<Statistics> factory = () -> new Statistics(0.01, 64, 64);
+        Statistics single = feed(factory.get(), entries);
+        Statistics merged = merged(entries, factory, new Random(13));
+
+        assertEquals(report(single, false), report(merged, false));
+        assertBounds(exact.getTopPaths(Integer.MAX_VALUE), merged.getTopPaths(Integer.MAX_VALUE), 64);
+        assertBounds(exact.getTopNotFoundReferers(Integer.MAX_VALUE), merged.getTopNotFoundReferers(Integer.MAX_VALUE), 64);
+        assertBounds(exact.getTopIpsByTraffic(Integer.MAX_VALUE), merged.getTopIpsByTraffic(Integer.MAX_VALUE), 64);
+
+        // Гарантированная частота пиковой секунды не больше настоящей наибольшей частоты
+        int exactPeak = exact.getPeakTimeAttendance().values().iterator().next();
+        for (int count : merged.getPeakTimeAttendance().values())
+            assertTrue(count <= exactPeak, count + " > " + exactPeak);
+    }
+
+    /**
+     * Оценка каждого отслеживаемого ключа не меньше настоящего счётчика, и каждый ключ с долей больше 1 / capacity отслеживается
+     */
+    private static void assertBounds(Map<String, Long> exact, Map<String, Long> approximate, int capacity) {
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        for (Map.Entry<String, Long> entry : approximate.entrySet())
+            assertTrue(entry.getValue() >= exact.getOrDefault(entry.getKey(), 0L), "Счётчик занижен: " + entry.getKey());
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            if (entry.getValue() > total / capacity)
+                assertTrue(approximate.containsKey(entry.getKey()), "Частый ключ потерян: " + entry.getKey());
+        }
+    }
+
+    /**
+     * Делит записи на части случайной длины, как части файла, и объединяет их статистики в случайном порядке
+     */
+    private static Statistics merged(List<LogEntry> entries, Supplier<Statistics> factory, Random random) {
+        List<Statistics> partials = new ArrayList<>();
+        int start = 0;
+        while (start < entries.size()) {
+            int end = Math.min(entries.size(), start + 1 + random.nextInt(entries.size() / 4));
+            partials.add(feed(factory.get(), entries.subList(start, end)));
+            start = end;
+        }
+        while (partials.size() > 1) {
+            Statistics first = partials.remove(random.nextInt(partials.size()));
+            Statistics second = partials.remove(random.nextInt(partials.size()));
+            partials.add(first.merge(second));
+        }
+        return partials.get(0);
+    }
+
+    private static Statistics feed(Statistics stat, List<LogEntry> entries) {
+        entries.forEach(stat);
+        return stat;
+    }
+
+    private static List<LogEntry> entries(Random random, int count, BiFunction<Random, Integer, String> lines) throws Exception {
+        CombinedLogParser parser = new CombinedLogParser();
+        List<LogEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            entries.add(parser.parse(lines.apply(random, i)));
+        return entries;
+    }
+
+    /**
+     * Все показатели статистики
+     * @param withTop - включать топ-отчёты и пики, которые совпадают, только если ничего не вытеснялось
+     */
+    private static Map<String, Object> report(Statistics stat, boolean withTop) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("total", stat.getTotalRequests());
+        report.put("traffic", stat.getTrafficRate());
+        report.put("users", stat.getUserRequestsRate());
+        report.put("errors", stat.getErrorRequestsRate());
+        report.put("attendance", stat.getUserAttendanceRate());
+        report.put("os", stat.getOsRate());
+        report.put("browsers", stat.getBrowserRate());
+        report.put("existing", stat.getExistingPagesCount());
+        report.put("nonExisting", stat.getNonExistingPagesCount());
+        report.put("domains", stat.getDomainsCount());
+        report.put("existingPages", stat.getExistingPages());
+        report.put("nonExistingPages", stat.getNonExistingPages());
+        report.put("domainNames", stat.getDomains());
+        report.put("sizes", Arrays.toString(stat.getResponseSizePercentiles(PERCENTILES)));
+        for (int statusClass = 2; statusClass <= 5; statusClass++)
+            report.put("sizes" + statusClass + "xx", Arrays.toString(stat.getStatusResponseSizePercentiles(statusClass, PERCENTILES)));
+
+        if (withTop) {
+            report.put("peakTimes", stat.getPeakTimeAttendance());
+            report.put("peakUsers", stat.getPeakUserAttendance());
+            report.put("topPaths", stat.getTopPaths(Integer.MAX_VALUE));
+            report.put("topReferers", stat.getTopNotFoundReferers(Integer.MAX_VALUE));
+            report.put("topTrafficIps", stat.getTopIpsByTraffic(Integer.MAX_VALUE));
+            Map<String, String> pathSizes = new HashMap<>();
+            stat.getTopPathResponseSizePercentiles(Integer.MAX_VALUE, PERCENTILES).forEach((path, sizes) -> pathSizes.put(path, Arrays.toString(sizes)));
+            report.put("pathSizes", pathSizes);
+        }
+        return report;
+    }
+
+    /**
+     * Строка лога с небольшим числом различных ip адресов, путей и referer
+     */
+    static String boundedLine(Random random, int i) {
+        int second = i / 4;
+        return String.format(LINE,
+                "10.0.0." + skewed(random, 100),
+                (second / 3600) % 24, (second / 60) % 60, second % 60,
+                "/page/" + skewed(random, 20),
+                CODES[random.nextInt(CODES.length)],
+                random.nextInt(100_000),
+                random.nextInt(5) == 0 ? "-" : "https://site" + skewed(random, 10) + ".example.com/ref",
+                AGENTS[random.nextInt(AGENTS.length)]);
+    }
+
+    /**
+     * Строка лога с тяжёлым хвостом: несколько частых путей, ip адресов и referer и много редких
+     */
+    static String line(Random random, int i) {
+        int second = i / 4;
+        return String.format(LINE,
+                "10." + skewed(random, 200) + "." + random.nextInt(256) + "." + random.nextInt(256),
+                (second / 3600) % 24, (second / 60) % 60, second % 60,
+                "/page/" + skewed(random, 1_000_000) + (random.nextInt(4) == 0 ? "?id=" + random.nextInt(100_000) : ""),
+                CODES[random.nextInt(CODES.length)],
+                random.nextInt(100_000),
+                random.nextInt(5) == 0 ? "-" : "https://site" + skewed(random, 50_000) + ".example.com/ref/" + random.nextInt(1_000_000),
+                AGENTS[random.nextInt(AGENTS.length)]);
+    }
+
+    private static int skewed(Random random, int bound) {
+        return (int) (Math.pow(random.nextDouble(), 4) * bound);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
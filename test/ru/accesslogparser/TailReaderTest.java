@@ -0,0 +1,123 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TailReaderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void partialLineIsCompletedByNextPoll() throws Exception {
+        Path file = directory.resolve("access.log");
+        write(file, "first\nsec");
+        try (TailReader reader = new TailReader(file, false)) {
+            assertEquals(List.of("first"), poll(reader));
+            append(file, "ond\r\nthi");
+            assertEquals(List.of("second"), poll(reader));
+            assertEquals(List.of(), poll(reader));
+            append(file, "rd\n");
+            assertEquals(List.of("third"), poll(reader));
+        }
+    }
+
+    @Test
+    void fromEndSkipsExistingLines() throws Exception {
+        Path file = directory.resolve("access.log");
+        write(file, "old\n");
+        try (TailReader reader = new TailReader(file, true)) {
+            assertEquals(List.of(), poll(reader));
+            append(file, "new\n");
+            assertEquals(List.of("new"), poll(reader));
+        }
+    }
+
+    @Test
+    void missingFileIsPickedUpWhenCreated() throws Exception {
+        Path file = directory.resolve("access.log");
+        try (TailReader reader = new TailReader(file, false)) {
+            assertEquals(List.of(), poll(reader));
+            write(file, "line\n");
+            assertEquals(List.of("line"), poll(reader));
+        }
+    }
+
+    @Test
+    void rotatedFileIsReadToEndThenNewFileFromStart() throws Exception {
+        Path file = directory.resolve("access.log");
+        write(file, "one\n");
+        try (TailReader reader = new TailReader(file, false)) {
+            assertEquals(List.of("one"), poll(reader));
+            append(file, "two\nunfinished");
+            Files.move(file, directory.resolve("access.log.1"));
+            write(file, "three\n");
+            assertEquals(List.of("two", "unfinished", "three"), poll(reader));
+            append(file, "four\n");
+            assertEquals(List.of("four"), poll(reader));
+        }
+    }
+
+    @Test
+    void shrunkFileIsReadFromStart() throws Exception {
+        Path file = directory.resolve("access.log");
+        write(file, "a long first line\nsecond line\npartial");
+        try (TailReader reader = new TailReader(file, false)) {
+            assertEquals(List.of("a long first line", "second line"), poll(reader));
+            write(file, "short\n");
+            assertEquals(List.of("short"), poll(reader));
+        }
+    }
+
+    @Test
+    void truncatedAndRefilledFileIsReadFromStart() throws Exception {
+        Path file = directory.resolve("access.log");
+        write(file, "first line\n");
+        try (TailReader reader = new TailReader(file, false)) {
+            assertEquals(List.of("first line"), poll(reader));
+            // Между опросами файл усечён и дописан дальше прежней позиции
+            write(file, "replaced line one\nreplaced line two\n");
+            assertEquals(List.of("replaced line one", "replaced line two"), poll(reader));
+            append(file, "next\n");
+            assertEquals(List.of("next"), poll(reader));
+        }
+    }
+
+    @Test
+    void linesLongerThanMarkAndBufferAreNotSeenAsTruncation() throws Exception {
+        Path file = directory.resolve("access.log");
+        String longLine = "x".repeat(100_000);
+        write(file, "a\n" + longLine.substring(0, 70_000));
+        try (TailReader reader = new TailReader(file, false)) {
+            assertEquals(List.of("a"), poll(reader));
+            for (int i = 70_000; i < longLine.length(); i += 10) {
+                append(file, longLine.substring(i, i + 10));
+                assertEquals(List.of(), poll(reader));
+            }
+            append(file, "\nb\n");
+            assertEquals(List.of(longLine, "b"), poll(reader));
+        }
+    }
+
+    private static List<String> poll(TailReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        reader.poll(lines::add);
+        return lines;
+    }
+
+    private static void write(Path file, String text) throws IOException {
+        Files.writeString(file, text);
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.accesslogparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopHistogramsTest {
+    /**
+     * Каждый ключ записывает только собственное значение, поэтому гистограмма, перешедшая к чужому ключу
+     * при вытеснении или объединении, сразу видна по её перцентилям
+     */
+    @Test
+    void histogramsFollowTheirKeys() {
+        Random random = new Random(5);
+        for (int round = 0; round < 100; round++) {
+            int capacity = 1 + random.nextInt(16);
+            TopHistograms<Integer> first = new TopHistograms<>(capacity, 7);
+            TopHistograms<Integer> second = new TopHistograms<>(capacity, 7);
+            Map<Integer, Long> exact = new HashMap<>();
+
+            for (int i = 0; i < 2000; i++) {
+                int key = (int) Math.floor(Math.pow(random.nextDouble(), 2) * 40);
+                (random.nextBoolean() ? first : second).record(key, key);
+                exact.merge(key, 1L, Long::sum);
+            }
+            first.merge(second);
+
+            for (SpaceSaving.Counter<Integer> counter : first.top(capacity)) {
+                LogLinearHistogram histogram = first.histogram(counter);
+                assertEquals(counter.getKey().longValue(), histogram.getValueAtPercentile(0), "Чужие значения в гистограмме");
+                assertEquals(counter.getKey().longValue(), histogram.getValueAtPercentile(100), "Чужие значения в гистограмме");
+                // Гистограмма содержит значения с момента появления ключа, их ровно гарантированная частота
+                assertEquals(counter.getCount() - counter.getError(), histogram.getTotalCount());
+                assertTrue(histogram.getTotalCount() <= exact.get(counter.getKey()));
+            }
+        }
+    }
+}